@@ -0,0 +1,103 @@
+package org.studyproject.metagram.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.studyproject.metagram.Application;
+import org.studyproject.metagram.domain.Role;
+import org.studyproject.metagram.domain.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+/**
+ * Application started once per benchmark fork against embedded PostgreSQL seeded by BenchmarkData.
+ * Captcha and mail are stubbed, volumes are set with -Dbench.users, -Dbench.messages, -Dbench.tags
+ * and -Dbench.likes-per-message.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkApp {
+    private EmbeddedPostgres postgres;
+    private Path uploadDir;
+    private ConfigurableApplicationContext context;
+    private BenchmarkData data;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        uploadDir = Files.createTempDirectory("metagram-bench");
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "postgres_url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "upload_path=" + uploadDir.toAbsolutePath(),
+                        "hostname=localhost",
+                        "recaptcha_secret=stub",
+                        "mail_host=localhost",
+                        "mail_username=bench",
+                        "mail.password=bench",
+                        "mail_port=25",
+                        "mail_protocol=smtp",
+                        "mail_debug=false",
+                        "server.port=0",
+                        "captcha.verifier=stub",
+                        "mail.queue.workers=0",
+                        "logging.level.root=WARN")
+                .run();
+        data = new BenchmarkData(
+                Integer.getInteger("bench.users", 10000),
+                Integer.getInteger("bench.messages", 200000),
+                Integer.getInteger("bench.tags", 50),
+                Integer.getInteger("bench.likes-per-message", 5));
+        data.seed(context.getBean(JdbcTemplate.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.close();
+        }
+        if (uploadDir != null) {
+            FileSystemUtils.deleteRecursively(uploadDir);
+        }
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public ConfigurableApplicationContext getContext() {
+        return context;
+    }
+
+    public BenchmarkData getData() {
+        return data;
+    }
+
+    public Path getUploadDir() {
+        return uploadDir;
+    }
+
+    /**
+     * user as it is restored from session: id, username and roles only
+     */
+    public User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(BenchmarkData.username(id));
+        user.setActive(true);
+        user.setRoles(Collections.singleton(Role.USER));
+        return user;
+    }
+}
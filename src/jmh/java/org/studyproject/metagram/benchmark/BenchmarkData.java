@@ -0,0 +1,95 @@
+package org.studyproject.metagram.benchmark;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Seeds benchmark database with set-based statements. Authors and tags are skewed like in real feeds:
+ * author of message is users * r^3 and tag is tags * r^2 for uniform r, so user 1 and tag0 are the hottest.
+ * Every message gets likes-per-message likes from users spread over the whole id range.
+ */
+public class BenchmarkData {
+    public static final String PASSWORD = "password";
+
+    private final int users;
+    private final int messages;
+    private final int tags;
+    private final int likesPerMessage;
+
+    public BenchmarkData(int users, int messages, int tags, int likesPerMessage) {
+        this.users = users;
+        this.messages = messages;
+        this.tags = tags;
+        this.likesPerMessage = likesPerMessage;
+    }
+
+    public static String username(long id) {
+        return "user" + id;
+    }
+
+    public static String tag(int index) {
+        return "tag" + index;
+    }
+
+    /**
+     * first message id, user ids are 1..users and message ids follow them
+     */
+    public long firstMessageId() {
+        return users + 1;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getMessages() {
+        return messages;
+    }
+
+    public void seed(JdbcTemplate jdbcTemplate) {
+        String password = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("select setseed(0.42)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into usr (id, username, password, active, email) " +
+                            "select g, 'user' || g, ?, true, 'user' || g || '@example.com' " +
+                            "from generate_series(1, ?) g")) {
+                statement.setString(1, password);
+                statement.setInt(2, users);
+                statement.execute();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into message (id, text, tag, filename, user_id) " +
+                            "select ? + g, 'Benchmark message ' || g || ' #' || t, t, " +
+                            "       substr(md5(g::text), 1, 2) || '/' || substr(md5(g::text), 3, 2) || '/' || md5(g::text) || '.jpg', " +
+                            "       1 + floor(? * power(random(), 3))::bigint " +
+                            "from (select g, 'tag' || floor(? * power(random(), 2))::int t " +
+                            "      from generate_series(1, ?) g) s")) {
+                statement.setLong(1, users);
+                statement.setInt(2, users);
+                statement.setInt(3, tags);
+                statement.setInt(4, messages);
+                statement.execute();
+            }
+            return null;
+        });
+        jdbcTemplate.update("insert into user_role (user_id, roles) select id, 'USER' from usr");
+        jdbcTemplate.update("insert into message_tag (message_id, tag) select id, tag from message " +
+                "on conflict do nothing");
+        jdbcTemplate.update("insert into message_likes (message_id, user_id) " +
+                "select m.id, 1 + (m.id * 7919 + k * 104729) % ? from message m, generate_series(1, ?) k " +
+                "on conflict do nothing", users, likesPerMessage);
+        jdbcTemplate.update("update message m set like_count = c.cnt " +
+                "from (select message_id, count(*) cnt from message_likes group by message_id) c " +
+                "where m.id = c.message_id");
+        jdbcTemplate.queryForObject("select setval('hibernate_sequence', (select max(id) from message) + 1)",
+                Long.class);
+        jdbcTemplate.execute("analyze");
+    }
+}
@@ -0,0 +1,81 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.MessageDto;
+import org.studyproject.metagram.repos.MessageRepo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offset feed queries at growing page depth next to keyset reads of the same feeds.
+ * Author 1 and tag0 are the heaviest in seeded data, see BenchmarkData.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedQueryBenchmark {
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"0", "10", "100", "1000"})
+    public int pageDepth;
+
+    private MessageRepo messageRepo;
+    private Pageable pageable;
+    private Pageable keyset;
+    private User author;
+    private String tag;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) {
+        messageRepo = app.getBean(MessageRepo.class);
+        pageable = PageRequest.of(pageDepth, PAGE_SIZE, Sort.by(Sort.Direction.DESC, "id"));
+        keyset = PageRequest.of(0, PAGE_SIZE + 1, Sort.by(Sort.Direction.DESC, "id"));
+        author = app.user(1);
+        tag = BenchmarkData.tag(0);
+    }
+
+    @Benchmark
+    public Page<MessageDto> findAll() {
+        return messageRepo.findAll(pageable);
+    }
+
+    @Benchmark
+    public Page<MessageDto> findByTag() {
+        return messageRepo.findByTag(tag, pageable);
+    }
+
+    @Benchmark
+    public Page<MessageDto> findAllByAuthor() {
+        return messageRepo.findAllByAuthor(pageable, author);
+    }
+
+    @Benchmark
+    public List<MessageDto> findAllKeyset() {
+        return messageRepo.findAllKeyset(0L, Long.MAX_VALUE, keyset);
+    }
+
+    @Benchmark
+    public List<MessageDto> findByTagKeyset() {
+        return messageRepo.findByTagKeyset(tag, 0L, Long.MAX_VALUE, keyset);
+    }
+}
@@ -0,0 +1,120 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+import org.studyproject.metagram.controller.ImageController;
+import org.studyproject.metagram.service.UploadStorage;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving of stored image by ImageController and by ResourceHttpRequestHandler which served /img/** before it,
+ * for full GET, conditional GET answered with 304 and 64 KiB Range. Validators for 304 are taken from the first
+ * response of each handler. Requests are mock requests without Tomcat sendfile support, so both handlers
+ * copy the body and the numbers compare handler overhead, not the network path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+    private static final String PATTERN = "/img/**";
+    private static final String RANGE = "bytes=1024-66559";
+
+    @Param({"controller", "resourceHandler"})
+    public String handler;
+
+    @Param({"full", "notModified", "range"})
+    public String request;
+
+    @Param({"262144", "2097152"})
+    public int fileSize;
+
+    private ImageController imageController;
+    private ResourceHttpRequestHandler resourceHandler;
+    private ServletContext servletContext;
+    private String filename;
+    private String etag;
+    private String lastModified;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) throws Exception {
+        imageController = app.getBean(ImageController.class);
+        servletContext = ((ServletWebServerApplicationContext) app.getContext()).getServletContext();
+
+        resourceHandler = new ResourceHttpRequestHandler();
+        resourceHandler.setLocations(Collections.singletonList(
+                new FileSystemResource(app.getUploadDir().toAbsolutePath() + "/")));
+        resourceHandler.setServletContext(servletContext);
+        resourceHandler.setApplicationContext(app.getContext());
+        resourceHandler.afterPropertiesSet();
+
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        filename = app.getBean(UploadStorage.class)
+                .store(new MockMultipartFile("file", "photo.jpg", "image/jpeg", content));
+
+        MockHttpServletResponse first = serve(newRequest());
+        etag = first.getHeader(HttpHeaders.ETAG);
+        lastModified = first.getHeader(HttpHeaders.LAST_MODIFIED);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse serve() throws IOException, ServletException {
+        MockHttpServletRequest request = newRequest();
+        if ("notModified".equals(this.request)) {
+            if (etag != null) {
+                request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+            } else {
+                request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+        } else if ("range".equals(this.request)) {
+            request.addHeader(HttpHeaders.RANGE, RANGE);
+        }
+        return serve(request);
+    }
+
+    private MockHttpServletRequest newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/img/" + filename);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, "controller".equals(handler)
+                ? "/img/" + filename
+                : filename);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, PATTERN);
+        return request;
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if ("controller".equals(handler)) {
+            imageController.image(request, response);
+        } else {
+            resourceHandler.handleRequest(request, response);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,58 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.LikeDto;
+import org.studyproject.metagram.service.MessageService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Like toggle of one user over hotMessages newest messages, with hotMessages = 1 every thread
+ * toggles the same row and measures contention on message.like_count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LikeBenchmark {
+
+    @Param({"1", "1000"})
+    public int hotMessages;
+
+    private MessageService messageService;
+    private long lastMessageId;
+    private int users;
+    private BenchmarkApp app;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) {
+        this.app = app;
+        messageService = app.getBean(MessageService.class);
+        lastMessageId = app.getData().firstMessageId() + app.getData().getMessages() - 1;
+        users = app.getData().getUsers();
+    }
+
+    @Benchmark
+    public LikeDto toggleLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        User user = app.user(1 + random.nextInt(users));
+        return messageService.like(user, lastMessageId - random.nextInt(hotMessages));
+    }
+}
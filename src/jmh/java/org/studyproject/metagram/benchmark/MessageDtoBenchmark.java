@@ -0,0 +1,46 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.studyproject.metagram.domain.dto.FeedMessageDto;
+import org.studyproject.metagram.domain.dto.MessageDto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of feed rows: MessageDto from query columns, copies made by HotTagCache
+ * and FeedMessageDto of JSON feed. Needs no database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDtoBenchmark {
+    private long id = 1;
+    private final MessageDto row = new MessageDto(1L, "Benchmark message #tag0", "tag0",
+            "ab/cd/abcd.jpg", 1L, "user1", 5L);
+
+    @Benchmark
+    public MessageDto fromColumns() {
+        return new MessageDto(id++, "Benchmark message #tag0", "tag0", "ab/cd/abcd.jpg", 1L, "user1", 5L);
+    }
+
+    @Benchmark
+    public MessageDto copy() {
+        return new MessageDto(row);
+    }
+
+    @Benchmark
+    public FeedMessageDto toFeedMessage() {
+        return new FeedMessageDto(row);
+    }
+}
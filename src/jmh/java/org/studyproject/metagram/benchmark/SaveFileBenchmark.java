@@ -0,0 +1,64 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.service.MessageService;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageService.saveFile with new content on every call and with re-posted content,
+ * which is deduplicated by content-addressed storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SaveFileBenchmark {
+
+    @Param({"262144", "2097152"})
+    public int fileSize;
+
+    @Param({"false", "true"})
+    public boolean duplicate;
+
+    private MessageService messageService;
+    private byte[] content;
+    private long counter;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) {
+        messageService = app.getBean(MessageService.class);
+        content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+    }
+
+    @Benchmark
+    public String saveFile() throws IOException {
+        if (!duplicate) {
+            long value = ++counter;
+            for (int i = 0; i < Long.BYTES; i++) {
+                content[i] = (byte) (value >>> (i * 8));
+            }
+        }
+        Message message = new Message();
+        messageService.saveFile(new MockMultipartFile("file", "photo.jpg", "image/jpeg", content), message);
+        return message.getFilename();
+    }
+}
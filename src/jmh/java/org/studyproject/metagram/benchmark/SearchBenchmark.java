@@ -0,0 +1,62 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.studyproject.metagram.repos.MessageRepo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-text search of first and second page with bounded and practically unbounded candidate sets.
+ * Every seeded text contains "benchmark", tag0 is the hottest tag and message 1000 matches one row,
+ * see BenchmarkData.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"benchmark", "tag0", "1000"})
+    public String query;
+
+    @Param({"1000", "1000000"})
+    public int candidates;
+
+    private MessageRepo messageRepo;
+    private float secondPageRank;
+    private long secondPageBefore;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) {
+        messageRepo = app.getBean(MessageRepo.class);
+        List<Object[]> firstPage = firstPage();
+        Object[] last = firstPage.get(firstPage.size() - 1);
+        secondPageRank = ((Number) last[1]).floatValue();
+        secondPageBefore = ((Number) last[0]).longValue();
+    }
+
+    @Benchmark
+    public List<Object[]> firstPage() {
+        return messageRepo.search(query, Float.MAX_VALUE, Long.MAX_VALUE, candidates, PAGE_SIZE + 1);
+    }
+
+    @Benchmark
+    public List<Object[]> secondPage() {
+        return messageRepo.search(query, secondPageRank, secondPageBefore, candidates, PAGE_SIZE + 1);
+    }
+}
@@ -0,0 +1,106 @@
+package org.studyproject.metagram.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.UserPrincipal;
+import org.studyproject.metagram.domain.dto.FeedPage;
+import org.studyproject.metagram.domain.dto.MessageDto;
+import org.studyproject.metagram.repos.MessageRepo;
+import org.studyproject.metagram.service.FeedFragmentCache;
+import org.studyproject.metagram.service.FeedPublisher;
+import org.studyproject.metagram.service.FeedVersion;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.ServletContext;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of main.html with first feed page: whole template as before FeedFragmentCache
+ * and with messageList taken from the cache, as MessagesController.main does now.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+    private static final int PAGE_SIZE = 10;
+
+    @Param({"false", "true"})
+    public boolean cachedFeed;
+
+    private ITemplateEngine templateEngine;
+    private FeedFragmentCache feedFragmentCache;
+    private ServletContext servletContext;
+    private User user;
+    private FeedPage page;
+
+    @Setup(Level.Trial)
+    public void setup(BenchmarkApp app) {
+        templateEngine = app.getBean(ITemplateEngine.class);
+        feedFragmentCache = app.getBean(FeedFragmentCache.class);
+        servletContext = ((ServletWebServerApplicationContext) app.getContext()).getServletContext();
+        user = app.user(1);
+        List<MessageDto> rows = app.getBean(MessageRepo.class).findAllKeyset(0L, Long.MAX_VALUE,
+                PageRequest.of(0, PAGE_SIZE + 1, Sort.by(Sort.Direction.DESC, "id")));
+        page = FeedPage.of(rows, PAGE_SIZE, null, null);
+
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(new UserPrincipal(user), null, user.getAuthorities()));
+    }
+
+    @Benchmark
+    public String renderMain() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/main");
+        request.setRemoteUser(user.getUsername());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Map<String, Object> model = new HashMap<>();
+        model.put("keyset", true);
+        model.put("feedUrl", "/main");
+        model.put("filter", "");
+        model.put("isCurrentUser", false);
+        model.put("liveTopic", FeedPublisher.FEED_TOPIC);
+        model.put("user", user);
+        if (cachedFeed) {
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+            try {
+                String key = FeedFragmentCache.key("main", null, null, PAGE_SIZE, "");
+                model.put("feedHtml", feedFragmentCache.render(key, FeedVersion.ALL, () -> page, model, user));
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+            }
+        } else {
+            model.put("page", page);
+        }
+        return templateEngine.process("main",
+                new WebContext(request, response, servletContext, Locale.ENGLISH, model));
+    }
+}
@@ -0,0 +1,66 @@
+package org.studyproject.metagram.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets of 1% width, from 1 microsecond to hours.
+ * Percentiles are upper bounds of buckets, so they are at most 1% above the real value.
+ */
+public class LatencyHistogram {
+    private static final double BASE = 1.01;
+    private static final int BUCKETS = (int) Math.ceil(Math.log(TimeUnit.HOURS.toMicros(2)) / Math.log(BASE)) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile long max;
+
+    public void record(long nanos, boolean error) {
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+        int bucket = Math.min(BUCKETS - 1, (int) (Math.log(micros) / Math.log(BASE)));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        if (error) {
+            errors.increment();
+        }
+        if (micros > max) {
+            synchronized (this) {
+                max = Math.max(max, micros);
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * public double percentileMillis(double percentile)
+     * latency in milliseconds which percentile (0..100) of requests did not exceed
+     */
+    public double percentileMillis(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return Math.min(Math.pow(BASE, i + 1), max) / 1000;
+            }
+        }
+        return maxMillis();
+    }
+
+    public double maxMillis() {
+        return max / 1000.0;
+    }
+}
@@ -0,0 +1,97 @@
+package org.studyproject.metagram.loadtest;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-model load driver: load.users virtual users log in and run the VirtualUser action mix
+ * against load.url for load.duration-seconds, latency percentiles are reported per endpoint.
+ * Target instance runs on data of SocialGraphGenerator with captcha and mail stubbed:
+ * --captcha.verifier=stub --mail.queue.workers=0
+ * <p>
+ * mvn -Ploadtest compile exec:java -Dexec.mainClass=org.studyproject.metagram.loadtest.LoadDriver
+ * -Dload.url=http://localhost:8080 -Dload.users=100 -Dload.duration-seconds=300
+ */
+public class LoadDriver {
+    public static final String PASSWORD = "password";
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public static String username(long id) {
+        return "user" + id;
+    }
+
+    public static String tag(int rank) {
+        return "tag" + rank;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        new LoadDriver().run();
+    }
+
+    /**
+     * public void record(String endpoint, long nanos, boolean error)
+     * adds one request to endpoint statistics
+     */
+    public void record(String endpoint, long nanos, boolean error) {
+        histograms.computeIfAbsent(endpoint, key -> new LatencyHistogram()).record(nanos, error);
+    }
+
+    private void run() throws InterruptedException {
+        String url = System.getProperty("load.url", "http://localhost:8080");
+        int users = Integer.getInteger("load.users", 50);
+        long duration = TimeUnit.SECONDS.toMillis(Long.getLong("load.duration-seconds", 120L));
+        long rampUp = TimeUnit.SECONDS.toMillis(Long.getLong("load.ramp-up-seconds", 10L));
+        long reportInterval = TimeUnit.SECONDS.toMillis(Long.getLong("load.report-seconds", 10L));
+        VirtualUser.Population population = new VirtualUser.Population(
+                Integer.getInteger("load.population", 1000000),
+                Integer.getInteger("load.messages", 5000000),
+                Integer.getInteger("load.tags", 1000));
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(users * 2);
+        connectionManager.setDefaultMaxPerRoute(users * 2);
+
+        long started = System.currentTimeMillis();
+        long deadline = started + rampUp + duration;
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(users, runnable ->
+                new Thread(runnable, "virtual-user-" + counter.incrementAndGet()));
+        for (int i = 0; i < users; i++) {
+            long startAt = started + rampUp * i / users;
+            executor.execute(new VirtualUser(url, connectionManager, population, this, startAt, deadline,
+                    Long.getLong("load.think-ms", 0L), Integer.getInteger("load.session-actions", 200)));
+        }
+        executor.shutdown();
+
+        long previous = 0;
+        while (!executor.awaitTermination(reportInterval, TimeUnit.MILLISECONDS)) {
+            long total = histograms.values().stream().mapToLong(LatencyHistogram::getCount).sum();
+            System.out.printf("%6.0f s  %,10d requests  %,8.1f req/s%n",
+                    (System.currentTimeMillis() - started) / 1000.0, total,
+                    (total - previous) * 1000.0 / reportInterval);
+            previous = total;
+        }
+        connectionManager.close();
+        report((System.currentTimeMillis() - started) / 1000.0);
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%n%-28s %10s %8s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            System.out.printf("%-28s %,10d %,8d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    entry.getKey(), histogram.getCount(), histogram.getErrors(), histogram.getCount() / seconds,
+                    histogram.percentileMillis(50), histogram.percentileMillis(90),
+                    histogram.percentileMillis(99), histogram.percentileMillis(99.9), histogram.maxMillis());
+        }
+    }
+}
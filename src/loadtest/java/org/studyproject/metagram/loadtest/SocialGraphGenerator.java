@@ -0,0 +1,192 @@
+package org.studyproject.metagram.loadtest;
+
+import org.flywaydb.core.Flyway;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills an empty database with a synthetic social graph for load tests, rows are streamed with COPY.
+ * Message authors, followed users and tags are Zipf distributed, so follower counts follow a power law,
+ * likes per message are Pareto distributed. All users have password LoadDriver.PASSWORD.
+ * <p>
+ * mvn -Ploadtest compile exec:java -Dexec.mainClass=org.studyproject.metagram.loadtest.SocialGraphGenerator
+ * -Dgen.url=jdbc:postgresql://localhost:5432/metagram -Dgen.users=1000000 -Dgen.messages=5000000
+ */
+public class SocialGraphGenerator {
+    private static final int CHUNK_ROWS = 50000;
+    private static final int MAX_LIKES_PER_MESSAGE = 10000;
+
+    private final int users = Integer.getInteger("gen.users", 1000000);
+    private final int messages = Integer.getInteger("gen.messages", 5000000);
+    private final int tags = Integer.getInteger("gen.tags", 1000);
+    private final int avgFollowing = Integer.getInteger("gen.avg-following", 50);
+    private final int avgLikes = Integer.getInteger("gen.avg-likes", 10);
+    private final double authorExponent = Double.parseDouble(System.getProperty("gen.author-exponent", "1.0"));
+    private final double followExponent = Double.parseDouble(System.getProperty("gen.follow-exponent", "1.0"));
+    private final double tagExponent = Double.parseDouble(System.getProperty("gen.tag-exponent", "1.1"));
+    private final Random random = new Random(Long.getLong("gen.seed", 42L));
+
+    public static void main(String[] args) throws SQLException, IOException {
+        String url = System.getProperty("gen.url", "jdbc:postgresql://localhost:5432/metagram");
+        String user = System.getProperty("gen.user", "postgres");
+        String password = System.getProperty("gen.password", "postgres");
+
+        Flyway.configure().dataSource(url, user, password).baselineOnMigrate(true).load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            new SocialGraphGenerator().generate(connection);
+        }
+    }
+
+    private void generate(Connection connection) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select exists (select 1 from usr)")) {
+            resultSet.next();
+            if (resultSet.getBoolean(1)) {
+                throw new IllegalStateException("Database already has users, generator needs an empty schema");
+            }
+        }
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        long started = System.currentTimeMillis();
+
+        generateUsers(copyManager);
+        log(started, "users", users);
+        long likes = generateMessages(copyManager);
+        log(started, "messages", messages);
+        log(started, "likes", likes);
+        long subscriptions = generateSubscriptions(copyManager);
+        log(started, "subscriptions", subscriptions);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("update message m set like_count = c.cnt " +
+                    "from (select message_id, count(*) cnt from message_likes group by message_id) c " +
+                    "where m.id = c.message_id");
+            statement.execute("update usr u set subscriber_count = c.cnt " +
+                    "from (select channel_id, count(*) cnt from user_subscriptions group by channel_id) c " +
+                    "where u.id = c.channel_id");
+            statement.execute("update usr u set subscription_count = c.cnt " +
+                    "from (select subscriber_id, count(*) cnt from user_subscriptions group by subscriber_id) c " +
+                    "where u.id = c.subscriber_id");
+            statement.execute("select setval('hibernate_sequence', " + ((long) users + messages + 1) + ")");
+            statement.execute("analyze");
+        }
+        log(started, "counters", users + messages);
+    }
+
+    private void generateUsers(CopyManager copyManager) throws SQLException, IOException {
+        String password = new BCryptPasswordEncoder().encode(LoadDriver.PASSWORD);
+        StringBuilder usr = new StringBuilder();
+        StringBuilder roles = new StringBuilder();
+        for (long id = 1; id <= users; id++) {
+            usr.append(id).append('\t').append(LoadDriver.username(id)).append('\t').append(password)
+                    .append("\tt\t").append(LoadDriver.username(id)).append("@example.com\n");
+            roles.append(id).append("\tUSER\n");
+            if (id % CHUNK_ROWS == 0 || id == users) {
+                copy(copyManager, "usr (id, username, password, active, email)", usr);
+                copy(copyManager, "user_role (user_id, roles)", roles);
+            }
+        }
+    }
+
+    /**
+     * messages with their tags and likes, returns number of likes
+     */
+    private long generateMessages(CopyManager copyManager) throws SQLException, IOException {
+        Zipf authors = new Zipf(users, authorExponent);
+        Zipf tagRanks = new Zipf(tags, tagExponent);
+        StringBuilder message = new StringBuilder();
+        StringBuilder messageTag = new StringBuilder();
+        StringBuilder messageLikes = new StringBuilder();
+        Set<Long> likers = new HashSet<>();
+        long likes = 0;
+        for (long i = 1; i <= messages; i++) {
+            long id = users + i;
+            String tag = LoadDriver.tag(tagRanks.sample(random));
+            String hash = Long.toHexString(random.nextLong() | Long.MIN_VALUE);
+            message.append(id).append("\tGenerated message ").append(i).append(" #").append(tag).append('\t')
+                    .append(tag).append('\t')
+                    .append(hash, 0, 2).append('/').append(hash, 2, 4).append('/').append(hash).append(".jpg\t")
+                    .append(authors.sample(random)).append('\n');
+            messageTag.append(id).append('\t').append(tag).append('\n');
+
+            likers.clear();
+            int count = likeCount();
+            while (likers.size() < count) {
+                likers.add(1L + random.nextInt(users));
+            }
+            for (Long liker : likers) {
+                messageLikes.append(id).append('\t').append(liker).append('\n');
+            }
+            likes += count;
+
+            if (i % CHUNK_ROWS == 0 || i == messages) {
+                copy(copyManager, "message (id, text, tag, filename, user_id)", message);
+                copy(copyManager, "message_tag (message_id, tag)", messageTag);
+                copy(copyManager, "message_likes (message_id, user_id)", messageLikes);
+            }
+        }
+        return likes;
+    }
+
+    /**
+     * Pareto distributed with alpha = 2 and scale avgLikes shifted to start from zero (Lomax),
+     * so messages without likes are possible and mean is scale / (alpha - 1) = avgLikes
+     */
+    private int likeCount() {
+        double scale = avgLikes;
+        double count = scale / Math.sqrt(1 - random.nextDouble()) - scale;
+        return (int) Math.min(Math.min(count, MAX_LIKES_PER_MESSAGE), users);
+    }
+
+    /**
+     * every user follows about avgFollowing users, followed users are Zipf distributed
+     */
+    private long generateSubscriptions(CopyManager copyManager) throws SQLException, IOException {
+        Zipf channels = new Zipf(users, followExponent);
+        StringBuilder subscriptions = new StringBuilder();
+        Set<Long> following = new HashSet<>();
+        long total = 0;
+        for (long subscriber = 1; subscriber <= users; subscriber++) {
+            following.clear();
+            int count = Math.min(users - 1, 1 + random.nextInt(2 * avgFollowing));
+            int attempts = 0;
+            while (following.size() < count && attempts++ < count * 10) {
+                long channel = channels.sample(random);
+                if (channel != subscriber) {
+                    following.add(channel);
+                }
+            }
+            for (Long channel : following) {
+                subscriptions.append(channel).append('\t').append(subscriber).append('\n');
+            }
+            total += following.size();
+            if (subscriber % CHUNK_ROWS == 0 || subscriber == users) {
+                copy(copyManager, "user_subscriptions (channel_id, subscriber_id)", subscriptions);
+            }
+        }
+        return total;
+    }
+
+    private static void copy(CopyManager copyManager, String table, StringBuilder rows)
+            throws SQLException, IOException {
+        if (rows.length() > 0) {
+            copyManager.copyIn("copy " + table + " from stdin", new StringReader(rows.toString()));
+            rows.setLength(0);
+        }
+    }
+
+    private static void log(long started, String what, long rows) {
+        System.out.printf("%-14s %,12d rows, %6.1f s%n", what, rows, (System.currentTimeMillis() - started) / 1000.0);
+    }
+}
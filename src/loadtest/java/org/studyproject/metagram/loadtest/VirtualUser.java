@@ -0,0 +1,364 @@
+package org.studyproject.metagram.loadtest;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One simulated user: logs in as a Zipf-chosen user of generated population and runs weighted actions
+ * until deadline, logging in again every sessionActions actions. Redirects are not followed,
+ * so every endpoint is measured on its own.
+ */
+public class VirtualUser implements Runnable {
+    private static final Pattern CSRF = Pattern.compile("name=\"_csrf\"\\s+value=\"([^\"]+)\"");
+    private static final Pattern OLDER = Pattern.compile("before=(\\d+)");
+    private static final String CSRF_HEADER = "X-CSRF-TOKEN";
+    private static final long LOGIN_BACKOFF_MS = 100;
+    private static final long MAX_LOGIN_BACKOFF_MS = 10_000;
+
+    /**
+     * action mix, weights are relative
+     */
+    private enum Action {
+        FEED(35), TAG_FEED(12), AUTHOR_FEED(12), TIMELINE(5), SEARCH(4), JSON_POLL(10),
+        LIKE(12), FOLLOW(5), POST(3), REGISTER(2);
+
+        private final int weight;
+
+        Action(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * ids and Zipf distributions of data made by SocialGraphGenerator, shared by all virtual users
+     */
+    public static class Population {
+        private final int users;
+        private final int messages;
+        private final Zipf activeUsers;
+        private final Zipf authors;
+        private final Zipf recentMessages;
+        private final Zipf tags;
+
+        public Population(int users, int messages, int tags) {
+            this.users = users;
+            this.messages = messages;
+            this.activeUsers = new Zipf(users, 0.8);
+            this.authors = new Zipf(users, 1.0);
+            this.recentMessages = new Zipf(messages, 1.0);
+            this.tags = new Zipf(tags, 1.1);
+        }
+
+        /**
+         * newest messages are the most liked ones
+         */
+        private long message(Random random) {
+            return (long) users + messages - recentMessages.sample(random) + 1;
+        }
+    }
+
+    private final String url;
+    private final HttpClientConnectionManager connectionManager;
+    private final Population population;
+    private final LoadDriver driver;
+    private final long startAt;
+    private final long deadline;
+    private final long thinkMillis;
+    private final int sessionActions;
+    private final Random random = new Random(ThreadLocalRandom.current().nextLong());
+    private final int totalWeight;
+
+    private CloseableHttpClient client;
+    private String csrf;
+    private String etag;
+
+    public VirtualUser(String url, HttpClientConnectionManager connectionManager, Population population,
+                       LoadDriver driver, long startAt, long deadline, long thinkMillis, int sessionActions) {
+        this.url = url;
+        this.connectionManager = connectionManager;
+        this.population = population;
+        this.driver = driver;
+        this.startAt = startAt;
+        this.deadline = deadline;
+        this.thinkMillis = thinkMillis;
+        this.sessionActions = sessionActions;
+        int weights = 0;
+        for (Action action : Action.values()) {
+            weights += action.weight;
+        }
+        this.totalWeight = weights;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Thread.sleep(Math.max(0, startAt - System.currentTimeMillis()));
+            int failedLogins = 0;
+            while (System.currentTimeMillis() < deadline) {
+                client = newClient();
+                try {
+                    if (!login(population.activeUsers.sample(random))) {
+                        failedLogins++;
+                        loginBackoff(failedLogins);
+                        continue;
+                    }
+                    failedLogins = 0;
+                    for (int i = 0; i < sessionActions && System.currentTimeMillis() < deadline; i++) {
+                        perform(nextAction());
+                        if (thinkMillis > 0) {
+                            Thread.sleep(thinkMillis);
+                        }
+                    }
+                } finally {
+                    client.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * pause after failed login, doubles with every failure in a row so a failing server is not hammered
+     * with login attempts which would skew the measured latencies
+     */
+    private void loginBackoff(int failedLogins) throws InterruptedException {
+        long delay = Math.min(MAX_LOGIN_BACKOFF_MS, LOGIN_BACKOFF_MS << Math.min(failedLogins - 1, 20));
+        Thread.sleep(Math.max(0, Math.min(delay, deadline - System.currentTimeMillis())));
+    }
+
+    private Action nextAction() {
+        int value = random.nextInt(totalWeight);
+        for (Action action : Action.values()) {
+            value -= action.weight;
+            if (value < 0) {
+                return action;
+            }
+        }
+        return Action.FEED;
+    }
+
+    private void perform(Action action) throws IOException {
+        switch (action) {
+            case FEED:
+                Response feed = get("GET /main", "/main");
+                Matcher older = feed != null ? OLDER.matcher(feed.body) : null;
+                if (older != null && older.find() && random.nextBoolean()) {
+                    get("GET /main?before", "/main?before=" + older.group(1));
+                }
+                break;
+            case TAG_FEED:
+                get("GET /main?filter", "/main?filter=" + LoadDriver.tag(population.tags.sample(random)));
+                break;
+            case AUTHOR_FEED:
+                get("GET /user-messages/{id}", "/user-messages/" + population.authors.sample(random));
+                break;
+            case TIMELINE:
+                get("GET /timeline", "/timeline");
+                break;
+            case SEARCH:
+                get("GET /search", "/search?q=" + LoadDriver.tag(population.tags.sample(random)));
+                break;
+            case JSON_POLL:
+                HttpGet poll = new HttpGet(url + "/api/feed");
+                if (etag != null) {
+                    poll.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+                }
+                Response json = execute("GET /api/feed", poll);
+                if (json != null && json.etag != null) {
+                    etag = json.etag;
+                }
+                break;
+            case LIKE:
+                HttpGet like = new HttpGet(url + "/messages/" + population.message(random) + "/like");
+                like.setHeader(HttpHeaders.REFERER, url + "/main");
+                execute("GET /messages/{id}/like", like);
+                break;
+            case FOLLOW:
+                get("GET /user/subscribe/{id}", "/user/subscribe/" + population.authors.sample(random));
+                break;
+            case POST:
+                post();
+                break;
+            case REGISTER:
+                register();
+                break;
+            default:
+                throw new IllegalArgumentException(action.name());
+        }
+    }
+
+    private boolean login(long userId) throws IOException {
+        Response page = get("GET /login", "/login");
+        if (page == null || !updateCsrf(page)) {
+            return false;
+        }
+        HttpPost login = new HttpPost(url + "/login");
+        login.setEntity(form(
+                new BasicNameValuePair("username", LoadDriver.username(userId)),
+                new BasicNameValuePair("password", LoadDriver.PASSWORD),
+                new BasicNameValuePair("_csrf", csrf)));
+        Response response = execute("POST /login", login);
+        if (response == null || response.location == null || response.location.contains("error")) {
+            return false;
+        }
+        Response main = get("GET /main", "/main");
+        return main != null && updateCsrf(main);
+    }
+
+    private void post() throws IOException {
+        String boundary = "----load" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        String tag = LoadDriver.tag(population.tags.sample(random));
+        part(body, boundary, "Content-Disposition: form-data; name=\"text\"", ("Load test #" + tag).getBytes(StandardCharsets.UTF_8));
+        part(body, boundary, "Content-Disposition: form-data; name=\"tag\"", tag.getBytes(StandardCharsets.UTF_8));
+        part(body, boundary, "Content-Disposition: form-data; name=\"file\"; filename=\"photo.jpg\"\r\n" +
+                "Content-Type: image/jpeg", photo());
+        body.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        HttpPost post = new HttpPost(url + "/main");
+        post.setHeader(HttpHeaders.CONTENT_TYPE, "multipart/form-data; boundary=" + boundary);
+        post.setHeader(CSRF_HEADER, csrf);
+        post.setEntity(new ByteArrayEntity(body.toByteArray()));
+        execute("POST /main", post);
+    }
+
+    private void register() throws IOException {
+        try (CloseableHttpClient anonymous = newClient()) {
+            CloseableHttpClient session = client;
+            client = anonymous;
+            try {
+                Response page = get("GET /registration", "/registration");
+                Matcher matcher = page != null ? CSRF.matcher(page.body) : null;
+                if (matcher == null || !matcher.find()) {
+                    return;
+                }
+                String username = "load-" + UUID.randomUUID();
+                HttpPost registration = new HttpPost(url + "/registration");
+                registration.setEntity(form(
+                        new BasicNameValuePair("username", username),
+                        new BasicNameValuePair("password", LoadDriver.PASSWORD),
+                        new BasicNameValuePair("password2", LoadDriver.PASSWORD),
+                        new BasicNameValuePair("email", username + "@example.com"),
+                        new BasicNameValuePair("g-recaptcha-response", "stub"),
+                        new BasicNameValuePair("_csrf", matcher.group(1))));
+                execute("POST /registration", registration);
+            } finally {
+                client = session;
+            }
+        }
+    }
+
+    private Response get(String endpoint, String path) {
+        return execute(endpoint, new HttpGet(url + path));
+    }
+
+    /**
+     * executes request and records its latency including body read, returns null on I/O error
+     */
+    private Response execute(String endpoint, HttpUriRequest request) {
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = client.execute(request)) {
+            String body = response.getEntity() != null ? EntityUtils.toString(response.getEntity()) : "";
+            int status = response.getStatusLine().getStatusCode();
+            driver.record(endpoint, System.nanoTime() - start, status >= 400);
+            return new Response(body, header(response, HttpHeaders.LOCATION), header(response, HttpHeaders.ETAG));
+        } catch (IOException e) {
+            driver.record(endpoint, System.nanoTime() - start, true);
+            return null;
+        }
+    }
+
+    private boolean updateCsrf(Response response) {
+        Matcher matcher = CSRF.matcher(response.body);
+        if (matcher.find()) {
+            csrf = matcher.group(1);
+            return true;
+        }
+        return false;
+    }
+
+    private CloseableHttpClient newClient() {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultCookieStore(new BasicCookieStore())
+                .disableRedirectHandling()
+                .build();
+    }
+
+    /**
+     * small JPEG with random color, so every post stores new content and generates derivatives
+     */
+    private byte[] photo() throws IOException {
+        BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.fillOval(random.nextInt(160), random.nextInt(120), 160, 120);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static void part(ByteArrayOutputStream body, String boundary, String headers, byte[] content)
+            throws IOException {
+        body.write(("--" + boundary + "\r\n" + headers + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(content);
+        body.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static UrlEncodedFormEntity form(NameValuePair... pairs) {
+        return new UrlEncodedFormEntity(Arrays.asList(pairs), StandardCharsets.UTF_8);
+    }
+
+    private static String header(CloseableHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static class Response {
+        private final String body;
+        private final String location;
+        private final String etag;
+
+        private Response(String body, String location, String etag) {
+            this.body = body;
+            this.location = location;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.studyproject.metagram.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution over ranks 1..n with exponent s: rank k is drawn with probability proportional to 1 / k^s.
+ * Cumulative weights are computed once, sampling is a binary search.
+ */
+public class Zipf {
+    private final double[] cumulative;
+
+    public Zipf(int n, double s) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Zipf needs at least one rank: " + n);
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1 / Math.pow(k, s);
+            cumulative[k - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * public int sample(Random random)
+     * rank from 1 to n, rank 1 is the most frequent
+     */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,61 @@
+package org.studyproject.metagram.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class CaptchaConfig {
+    @Value("${captcha.connect-timeout-ms:2000}")
+    private int connectTimeout;
+    @Value("${captcha.read-timeout-ms:3000}")
+    private int readTimeout;
+    @Value("${captcha.pool.max-connections:20}")
+    private int maxConnections;
+    @Value("${captcha.pool.acquire-timeout-ms:500}")
+    private int acquireTimeout;
+
+    /**
+     * RestTemplate captchaRestTemplate() returns rest template for ReCaptcha
+     * with pooled keep-alive connections, connect, read and pool acquire timeouts
+     */
+    @Bean
+    public RestTemplate captchaRestTemplate() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setConnectionRequestTimeout(acquireTimeout)
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    /**
+     * ThreadPoolTaskExecutor captchaExecutor() bounded executor for ReCaptcha calls,
+     * request threads are released while verification is in progress
+     */
+    @Bean
+    public ThreadPoolTaskExecutor captchaExecutor(@Value("${captcha.threads:20}") int threads,
+                                                  @Value("${captcha.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("captcha-");
+        executor.setDaemon(true);
+        return executor;
+    }
+}
@@ -1,19 +1,20 @@
-package org.studyproject.metagram.config;
-
-public class Literals {
-    public static final String NOTHING_TO_CHANGE = "Nothing to change.";
-    public static final String PLEASE_FILL_CAPTCHA = "Please, fill captcha.";
-    public static final String PASSWORD_CONFIRMATION_CANNOT_BE_EMPTY = "Password confirmation cannot be empty.";
-    public static final String PASSWORDS_ARE_DIFFERENT = "Passwords are different!";
-    public static final String USER_ALREADY_EXIST = "User already exists!";
-    public static final String USER_SUCCESSFULLY_ACTIVATED = "User successfully activated";
-    public static final String ACTIVATION_CODE_IS_NOT_FOUND = "Activation code is not found!";
-    public static final String USER_NOT_FOUND = "User not found";
-    public static final String ACTIVATION_EMAIL = "Hello, %s! \n Welcome to Metagram. Please, visit next link: http://%s/activate/%s";
-    public static final String ACTIVATION_CODE = "Activation code";
-    public static final String PLEASE_FILL_MSG = "Please, fill the message.";
-    public static final String MESSAGE_TOO_LONG = "Message too long.";
-    public static final String PLEASE_ADD_TAGS = "Please, add tags.";
-
-
-}
+package org.studyproject.metagram.config;
+
+public class Literals {
+    public static final String NOTHING_TO_CHANGE = "Nothing to change.";
+    public static final String PLEASE_FILL_CAPTCHA = "Please, fill captcha.";
+    public static final String PASSWORD_CONFIRMATION_CANNOT_BE_EMPTY = "Password confirmation cannot be empty.";
+    public static final String PASSWORDS_ARE_DIFFERENT = "Passwords are different!";
+    public static final String USER_ALREADY_EXIST = "User already exists!";
+    public static final String USER_SUCCESSFULLY_ACTIVATED = "User successfully activated";
+    public static final String ACTIVATION_CODE_IS_NOT_FOUND = "Activation code is not found!";
+    public static final String USER_NOT_FOUND = "User not found";
+    public static final String MESSAGE_NOT_FOUND = "Message not found";
+    public static final String ACTIVATION_EMAIL = "Hello, %s! \n Welcome to Metagram. Please, visit next link: http://%s/activate/%s";
+    public static final String ACTIVATION_CODE = "Activation code";
+    public static final String PLEASE_FILL_MSG = "Please, fill the message.";
+    public static final String MESSAGE_TOO_LONG = "Message too long.";
+    public static final String PLEASE_ADD_TAGS = "Please, add tags.";
+
+
+}
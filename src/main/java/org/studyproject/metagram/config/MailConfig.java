@@ -1,49 +1,55 @@
-package org.studyproject.metagram.config;
-
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
-
-import java.util.Properties;
-
-@Configuration
-public class MailConfig {
-    @Value("${spring.mail.host}")
-    private String host;
-    @Value("${spring.mail.username}")
-    private String username;
-    @Value("${spring.mail.password}")
-    private String password;
-    @Value("${spring.mail.port}")
-    private int port;
-    @Value("${spring.mail.protocol}")
-    private String protocol;
-    @Value("${mail.debug}")
-    private String debug;
-
-    /**
-     * JavaMailSender javaMailSender() returns JavaMailSender with parameters which defined in application.properties
-     * spring.mail.host
-     * spring.mail.username
-     * spring.mail.password
-     * spring.mail.port
-     * spring.mail.protocol
-     * mail.debug
-     */
-    @Bean
-    public JavaMailSender javaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost(host);
-        mailSender.setPort(port);
-        mailSender.setUsername(username);
-        mailSender.setPassword(password);
-        Properties properties = mailSender.getJavaMailProperties();
-        properties.setProperty("mail.transport.protocol", protocol);
-        properties.setProperty("mail.debug", debug);
-
-
-        return mailSender;
-    }
-}
+package org.studyproject.metagram.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Properties;
+
+@Configuration
+public class MailConfig {
+    @Value("${spring.mail.host}")
+    private String host;
+    @Value("${spring.mail.username}")
+    private String username;
+    @Value("${spring.mail.password}")
+    private String password;
+    @Value("${spring.mail.port}")
+    private int port;
+    @Value("${spring.mail.protocol}")
+    private String protocol;
+    @Value("${mail.debug}")
+    private String debug;
+    @Value("${mail.timeout-ms:10000}")
+    private String timeout;
+
+    /**
+     * JavaMailSender javaMailSender() returns JavaMailSender with parameters which defined in application.properties
+     * spring.mail.host
+     * spring.mail.username
+     * spring.mail.password
+     * spring.mail.port
+     * spring.mail.protocol
+     * mail.debug
+     * mail.timeout-ms - connect, read and write timeout, so slow mail server cannot block queue workers
+     */
+    @Bean
+    public JavaMailSender javaMailSender() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(host);
+        mailSender.setPort(port);
+        mailSender.setUsername(username);
+        mailSender.setPassword(password);
+        Properties properties = mailSender.getJavaMailProperties();
+        properties.setProperty("mail.transport.protocol", protocol);
+        properties.setProperty("mail.debug", debug);
+        properties.setProperty("mail." + protocol + ".connectiontimeout", timeout);
+        properties.setProperty("mail." + protocol + ".timeout", timeout);
+        properties.setProperty("mail." + protocol + ".writetimeout", timeout);
+
+
+        return mailSender;
+    }
+}
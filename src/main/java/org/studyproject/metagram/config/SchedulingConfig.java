@@ -0,0 +1,35 @@
+package org.studyproject.metagram.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+@Configuration
+public class SchedulingConfig implements SchedulingConfigurer {
+    @Value("${scheduling.threads:5}")
+    private int threads;
+
+    /**
+     * ThreadPoolTaskScheduler scheduledTaskScheduler() scheduler of @Scheduled jobs. STOMP broker defines its own
+     * schedulers, so without this one jobs share a single thread and a long orphan collection or account deletion
+     * run delays all others
+     */
+    @Bean
+    public ThreadPoolTaskScheduler scheduledTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("scheduled-");
+        return scheduler;
+    }
+
+    /**
+     * configureTasks(ScheduledTaskRegistrar registrar) runs @Scheduled jobs on scheduledTaskScheduler
+     */
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(scheduledTaskScheduler());
+    }
+}
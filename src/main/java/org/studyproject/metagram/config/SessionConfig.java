@@ -0,0 +1,91 @@
+package org.studyproject.metagram.config;
+
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.session.config.SessionRepositoryCustomizer;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+
+import java.io.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+@Configuration
+public class SessionConfig implements BeanClassLoaderAware {
+    /**
+     * first bytes of plain Java serialization stream, attributes written before compression start with them
+     */
+    private static final int STREAM_MAGIC_HIGH = 0xAC;
+    private static final int STREAM_MAGIC_LOW = 0xED;
+
+    /**
+     * session row is rewritten only when session id, timeout or principal changed
+     * or when last access time moved more than session.touch-interval-ms
+     */
+    private static final String UPDATE_SESSION_QUERY = "UPDATE %TABLE_NAME% " +
+            "SET SESSION_ID = v.session_id, LAST_ACCESS_TIME = v.last_access_time, " +
+            "MAX_INACTIVE_INTERVAL = v.max_inactive_interval, EXPIRY_TIME = v.expiry_time, PRINCIPAL_NAME = v.principal_name " +
+            "FROM (SELECT CAST(? AS VARCHAR) AS session_id, CAST(? AS BIGINT) AS last_access_time, " +
+            "CAST(? AS INT) AS max_inactive_interval, CAST(? AS BIGINT) AS expiry_time, " +
+            "CAST(? AS VARCHAR) AS principal_name, CAST(? AS VARCHAR) AS primary_id) v " +
+            "WHERE PRIMARY_ID = v.primary_id AND (SESSION_ID <> v.session_id " +
+            "OR MAX_INACTIVE_INTERVAL <> v.max_inactive_interval " +
+            "OR PRINCIPAL_NAME IS DISTINCT FROM v.principal_name " +
+            "OR v.last_access_time - LAST_ACCESS_TIME >= %d)";
+
+    private ClassLoader classLoader;
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * SessionRepositoryCustomizer<JdbcIndexedSessionRepository> sessionRepositoryCustomizer(long touchInterval)
+     * skips session row update on requests which only touch last access time
+     */
+    @Bean
+    public SessionRepositoryCustomizer<JdbcIndexedSessionRepository> sessionRepositoryCustomizer(
+            @Value("${session.touch-interval-ms:60000}") long touchInterval) {
+        return repository -> repository.setUpdateSessionQuery(String.format(UPDATE_SESSION_QUERY, touchInterval));
+    }
+
+    /**
+     * ConversionService springSessionConversionService()
+     * session attributes are Java-serialized and deflated, plain attributes of older sessions are still read
+     */
+    @Bean("springSessionConversionService")
+    public ConversionService springSessionConversionService() {
+        GenericConversionService conversionService = new GenericConversionService();
+        conversionService.addConverter(Object.class, byte[].class, SessionConfig::serialize);
+        conversionService.addConverter(byte[].class, Object.class, this::deserialize);
+        return conversionService;
+    }
+
+    private static byte[] serialize(Object source) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeObject(source);
+        } catch (IOException e) {
+            throw new SerializationFailedException("Cannot serialize session attribute " + source.getClass(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object deserialize(byte[] source) {
+        boolean plain = source.length > 1
+                && (source[0] & 0xFF) == STREAM_MAGIC_HIGH && (source[1] & 0xFF) == STREAM_MAGIC_LOW;
+        InputStream bytes = new ByteArrayInputStream(source);
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(
+                plain ? bytes : new InflaterInputStream(bytes), classLoader)) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationFailedException("Cannot deserialize session attribute", e);
+        }
+    }
+}
@@ -1,58 +1,101 @@
-package org.studyproject.metagram.config;
-
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
-import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.studyproject.metagram.service.UserService;
-
-@Configuration
-@EnableWebSecurity
-@EnableGlobalMethodSecurity(prePostEnabled = true)
-public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
-
-    PasswordEncoder passwordEncoder;
-    private UserService userSevice;
-
-    @Autowired
-    public WebSecurityConfig(PasswordEncoder passwordEncoder, UserService userSevice) {
-        this.passwordEncoder = passwordEncoder;
-        this.userSevice = userSevice;
-    }
-
-
-    /**
-     * configure(HttpSecurity http) Spring Security configuration
-     */
-    @Override
-    protected void configure(HttpSecurity http) throws Exception {
-        http
-                .authorizeRequests()
-                .antMatchers("/", "/registration", "/static/**", "/activate/*")
-                .permitAll()
-                .anyRequest().authenticated()
-                .and()
-                .formLogin()
-                .loginPage("/login")
-                .permitAll()
-                .and()
-                .rememberMe()
-                .and()
-                .logout()
-                .permitAll();
-    }
-
-    /**
-     * configure(AuthenticationManagerBuilder auth) password encoder configuration
-     */
-    @Override
-    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userSevice)
-                .passwordEncoder(passwordEncoder);
-    }
-}
+package org.studyproject.metagram.config;
+
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.RememberMeAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.authentication.rememberme.TokenBasedRememberMeServices;
+import org.studyproject.metagram.domain.UserCredentials;
+import org.studyproject.metagram.service.UserService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.UUID;
+
+@Configuration
+@EnableWebSecurity
+@EnableGlobalMethodSecurity(prePostEnabled = true)
+public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+
+    PasswordEncoder passwordEncoder;
+    private UserService userSevice;
+
+    @Autowired
+    public WebSecurityConfig(PasswordEncoder passwordEncoder, UserService userSevice) {
+        this.passwordEncoder = passwordEncoder;
+        this.userSevice = userSevice;
+    }
+
+
+    /**
+     * configure(HttpSecurity http) Spring Security configuration
+     */
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+        http
+                .authorizeRequests()
+                .antMatchers("/", "/registration", "/static/**", "/webjars/**", "/activate/*")
+                .permitAll()
+                .anyRequest().authenticated()
+                .and()
+                .formLogin()
+                .loginPage("/login")
+                .permitAll()
+                .and()
+                .rememberMe()
+                .rememberMeServices(new PrincipalRememberMeServices(UUID.randomUUID().toString(), userSevice))
+                .and()
+                .logout()
+                .permitAll();
+    }
+
+    /**
+     * configure(AuthenticationManagerBuilder auth) password encoder configuration
+     */
+    @Override
+    protected void configure(AuthenticationManagerBuilder auth) throws Exception {
+        PrincipalAuthenticationProvider provider = new PrincipalAuthenticationProvider();
+        provider.setUserDetailsService(userSevice);
+        provider.setPasswordEncoder(passwordEncoder);
+        auth.authenticationProvider(provider);
+    }
+
+    /**
+     * password hash is checked against cached UserCredentials, authentication and session get its UserPrincipal only
+     */
+    private static Object sessionPrincipal(UserDetails user) {
+        return user instanceof UserCredentials ? ((UserCredentials) user).getPrincipal() : user;
+    }
+
+    private static class PrincipalAuthenticationProvider extends DaoAuthenticationProvider {
+        @Override
+        protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                             UserDetails user) {
+            return super.createSuccessAuthentication(sessionPrincipal(user), authentication, user);
+        }
+    }
+
+    private static class PrincipalRememberMeServices extends TokenBasedRememberMeServices {
+        private PrincipalRememberMeServices(String key, UserDetailsService userDetailsService) {
+            super(key, userDetailsService);
+        }
+
+        @Override
+        protected Authentication createSuccessfulAuthentication(HttpServletRequest request, UserDetails user) {
+            RememberMeAuthenticationToken authentication =
+                    new RememberMeAuthenticationToken(getKey(), sessionPrincipal(user), user.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetails(request));
+            return authentication;
+        }
+    }
+}
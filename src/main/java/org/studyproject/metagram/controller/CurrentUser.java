@@ -0,0 +1,17 @@
+package org.studyproject.metagram.controller;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Handler parameter of type User which receives authenticated user, see CurrentUserArgumentResolver.
+ * Parameter is null for anonymous requests
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,39 @@
+package org.studyproject.metagram.controller;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.UserPrincipal;
+
+/**
+ * Resolves @CurrentUser User parameters from UserPrincipal of SecurityContext.
+ * Sessions created before UserPrincipal still hold User entity as principal, it is copied the same way.
+ * Every parameter gets its own User, so handlers cannot change principal shared by sessions
+ */
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && parameter.getParameterType().isAssignableFrom(User.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = authentication == null ? null : authentication.getPrincipal();
+        if (principal instanceof UserPrincipal) {
+            return ((UserPrincipal) principal).toUser();
+        }
+        if (principal instanceof User) {
+            return new UserPrincipal((User) principal).toUser();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+package org.studyproject.metagram.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.FeedResponse;
+import org.studyproject.metagram.domain.util.TagHelper;
+import org.studyproject.metagram.exeption.ResourceNotFoundException;
+import org.studyproject.metagram.service.FeedVersion;
+import org.studyproject.metagram.service.MessageService;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static org.studyproject.metagram.config.Literals.USER_NOT_FOUND;
+
+/**
+ * Read-only JSON feeds for polling clients.
+ * Responses carry ETag of FeedVersion versions of the requested feed and Last-Modified of any feed change,
+ * they are checked before feed queries, so repeated polls of unchanged feeds are answered with 304
+ * and no database access.
+ */
+@RestController
+@RequestMapping("/api/feed")
+public class FeedApiController {
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    private final MessageService messageService;
+    private final FeedVersion feedVersion;
+
+    @Autowired
+    public FeedApiController(MessageService messageService, FeedVersion feedVersion) {
+        this.messageService = messageService;
+        this.feedVersion = feedVersion;
+    }
+
+    /**
+     * @GetMapping public FeedResponse feed(@CurrentUser User user,
+     * @RequestParam(required = false) Long before,
+     * @RequestParam(required = false) Long after,
+     * @RequestParam(required = false) Integer size, ...)
+     * all messages
+     */
+    @GetMapping
+    public FeedResponse feed(@CurrentUser User user,
+                             @RequestParam(required = false) Long before,
+                             @RequestParam(required = false) Long after,
+                             @RequestParam(required = false) Integer size,
+                             WebRequest request,
+                             HttpServletResponse response) {
+        if (isNotModified(FeedVersion.ALL, FeedVersion.ALL, user, request, response)) {
+            return null;
+        }
+        return new FeedResponse(messageService.messageList(null, before, after, pageSize(size), user));
+    }
+
+    /**
+     * @GetMapping("/tag/{tag}") public FeedResponse tagFeed(@PathVariable String tag, ...)
+     * messages with tag
+     */
+    @GetMapping("/tag/{tag}")
+    public FeedResponse tagFeed(@CurrentUser User user,
+                                @PathVariable String tag,
+                                @RequestParam(required = false) Long before,
+                                @RequestParam(required = false) Long after,
+                                @RequestParam(required = false) Integer size,
+                                WebRequest request,
+                                HttpServletResponse response) {
+        String feed = FeedVersion.tagFeed(TagHelper.normalize(tag));
+        if (isNotModified(feed, feed, user, request, response)) {
+            return null;
+        }
+        return new FeedResponse(messageService.messageList(tag, before, after, pageSize(size), user));
+    }
+
+    /**
+     * @GetMapping("/author/{author}") public FeedResponse authorFeed(@PathVariable User author, ...)
+     * messages of one author
+     */
+    @GetMapping("/author/{author}")
+    public FeedResponse authorFeed(@CurrentUser User user,
+                                   @PathVariable User author,
+                                   @RequestParam(required = false) Long before,
+                                   @RequestParam(required = false) Long after,
+                                   @RequestParam(required = false) Integer size,
+                                   WebRequest request,
+                                   HttpServletResponse response) {
+        if (author == null) {
+            throw new ResourceNotFoundException(USER_NOT_FOUND);
+        }
+        String feed = FeedVersion.authorFeed(author.getId());
+        if (isNotModified(feed, feed, user, request, response)) {
+            return null;
+        }
+        return new FeedResponse(messageService.messageListForUser(before, after, pageSize(size), user, author));
+    }
+
+    /**
+     * @GetMapping("/liked") public FeedResponse likedFeed(@CurrentUser User user, ...)
+     * messages liked by current user
+     */
+    @GetMapping("/liked")
+    public FeedResponse likedFeed(@CurrentUser User user,
+                                  @RequestParam(required = false) Long before,
+                                  @RequestParam(required = false) Long after,
+                                  @RequestParam(required = false) Integer size,
+                                  WebRequest request,
+                                  HttpServletResponse response) {
+        if (isNotModified(FeedVersion.likedFeed(user.getId()), FeedVersion.ALL, user, request, response)) {
+            return null;
+        }
+        return new FeedResponse(messageService.likedList(before, after, pageSize(size), user));
+    }
+
+    /**
+     * sets validators and answers 304 when client copy is current. ETag contains user id,
+     * because meLiked flags differ between users. Rows of liked feed are selected by likes of user,
+     * their like counts may be moved by likes anywhere
+     */
+    private boolean isNotModified(String contentFeed, String likesFeed, User user,
+                                  WebRequest request, HttpServletResponse response) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+        FeedVersion.Validator validator = feedVersion.validator(contentFeed, likesFeed, user.getId());
+        return request.checkNotModified(validator.getEtag(), validator.getLastModified());
+    }
+
+    private static int pageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,209 @@
+package org.studyproject.metagram.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.studyproject.metagram.service.ThumbnailService;
+import org.studyproject.metagram.service.ThumbnailService.Derivative;
+import org.studyproject.metagram.service.UploadStorage;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serving of uploaded images and their derivatives from /img/**.
+ * Stored names never change their content, so responses are cached as immutable with strong ETag,
+ * conditional and byte-range requests are supported and file body is sent with Tomcat sendfile
+ * or FileChannel.transferTo.
+ */
+@Controller
+public class ImageController {
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    /**
+     * same threshold as Tomcat DefaultServlet: small bodies are cheaper to copy than to hand over to poller
+     */
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final ThumbnailService thumbnailService;
+    private final UploadStorage uploadStorage;
+
+    @Autowired
+    public ImageController(ThumbnailService thumbnailService, UploadStorage uploadStorage) {
+        this.thumbnailService = thumbnailService;
+        this.uploadStorage = uploadStorage;
+    }
+
+    /**
+     * @GetMapping("/img/**") public void image(HttpServletRequest request, HttpServletResponse response)
+     * original image or /img/card/**, /img/retina/** derivative. Derivative is generated on first request,
+     * when it cannot be made client is redirected to original
+     */
+    @GetMapping("/img/**")
+    public void image(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String name = imageName(request);
+        if (name.isEmpty() || name.startsWith(".") || name.contains("/.")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path path;
+        MediaType mediaType;
+        Derivative derivative = derivativeOf(name);
+        if (derivative != null) {
+            String filename = name.substring(derivative.path().length() + 1);
+            path = thumbnailService.derivative(filename, derivative);
+            if (path == null) {
+                response.sendRedirect(UriComponentsBuilder.fromPath("/img/").path(filename).build().encode().toUriString());
+                return;
+            }
+            mediaType = ThumbnailService.mediaType(filename);
+        } else {
+            path = uploadStorage.resolve(name);
+            mediaType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        }
+        if (!Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        serve(request, response, path, mediaType, etag(name));
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response, Path path, MediaType mediaType,
+                       String etag) throws IOException {
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(mediaType.toString());
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * returns {start, end} of single satisfiable range, empty array when whole file is sent
+     * (multiple ranges are not supported) and null when range is not satisfiable
+     */
+    private static long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            return start > end || start >= length ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static String etag(String name) {
+        return "\"" + DigestUtils.md5DigestAsHex(name.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static Derivative derivativeOf(String name) {
+        for (Derivative derivative : Derivative.values()) {
+            if (name.startsWith(derivative.path() + "/")) {
+                return derivative;
+            }
+        }
+        return null;
+    }
+
+    private static String imageName(HttpServletRequest request) {
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return PATH_MATCHER.extractPathWithinPattern(pattern, path);
+    }
+}
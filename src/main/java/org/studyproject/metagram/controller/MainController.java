@@ -1,17 +1,17 @@
-package org.studyproject.metagram.controller;
-
-import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
-import org.springframework.web.bind.annotation.GetMapping;
-
-@Controller
-public class MainController {
-
-
-    @GetMapping("/")
-    public String indexPage(Model model) {
-        return "index";
-    }
-
-}
-
+package org.studyproject.metagram.controller;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+
+@Controller
+public class MainController {
+
+
+    @GetMapping("/")
+    public String indexPage(Model model) {
+        return "index";
+    }
+
+}
+
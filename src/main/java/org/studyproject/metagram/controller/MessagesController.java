@@ -1,262 +1,372 @@
-package org.studyproject.metagram.controller;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.web.PageableDefault;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
-import org.springframework.util.StringUtils;
-import org.springframework.validation.BindingResult;
-import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import org.springframework.web.util.UriComponents;
-import org.springframework.web.util.UriComponentsBuilder;
-import org.studyproject.metagram.domain.Message;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.domain.dto.MessageDto;
-import org.studyproject.metagram.repos.MessageRepo;
-import org.studyproject.metagram.service.MessageService;
-
-import javax.validation.Valid;
-import java.io.File;
-import java.io.IOException;
-import java.util.Set;
-
-import static org.studyproject.metagram.config.Literals.NOTHING_TO_CHANGE;
-
-@Controller
-public class MessagesController {
-
-    private final MessageRepo messageRepo;
-    private MessageService messageService;
-
-    @Autowired
-    public MessagesController(MessageRepo messageRepo, MessageService messageService) {
-        this.messageRepo = messageRepo;
-        this.messageService = messageService;
-    }
-
-    /**
-     * @GetMapping("/main") String main (@RequestParam(required = false, defaultValue = "") String filter, Model model,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
-     * @AuthenticationPrincipal User user) - get all page, with all messages and pagination
-     */
-    @GetMapping("/main")
-    public String main(@RequestParam(required = false, defaultValue = "") String filter, Model model,
-                       @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
-                       @AuthenticationPrincipal User user) {
-        Page<MessageDto> page = messageService.messageList(filter, pageable, user);
-        model.addAttribute("pageCount", page.getTotalPages());
-        model.addAttribute("pageNumber", page.getNumber());
-        model.addAttribute("page", page);
-        model.addAttribute("filter", filter);
-        model.addAttribute("user", user);
-        return "main";
-    }
-
-
-    /**
-     * @PostMapping("/main") String add(@RequestParam("file") MultipartFile file,
-     * @AuthenticationPrincipal User user,
-     * Model model,
-     * @Valid Message message,
-     * BindingResult bindingResult,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
-     * - adding message from main page form. return main page.
-     */
-    @PostMapping("/main")
-    public String add(@RequestParam("file") MultipartFile file,
-                      @AuthenticationPrincipal User user,
-                      Model model,
-                      @Valid Message message,
-                      BindingResult bindingResult,
-                      @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
-    ) throws IOException {
-        messageService.addMessage(file, user, model, message, bindingResult, pageable);
-
-        return "main";
-    }
-
-    /**
-     * @GetMapping("/user-messages/{author}") String userMessages(
-     * @AuthenticationPrincipal User currentUser,
-     * @PathVariable User author,
-     * Model model,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
-     * - get messages from specified author
-     */
-    @GetMapping("/user-messages/{author}")
-    public String userMessages(
-            @AuthenticationPrincipal User currentUser,
-            @PathVariable User author,
-            Model model,
-            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
-    ) {
-
-        Page<MessageDto> page = messageService.messageListForUser(pageable, currentUser, author);
-        model.addAttribute("user", author);
-        model.addAttribute("page", page);
-        model.addAttribute("isSubscriber", author.getSubscribers().contains(currentUser));
-        model.addAttribute("isCurrentUser", currentUser.equals(author));
-        model.addAttribute("pageCount", page.getTotalPages());
-        return "userMessages";
-    }
-
-    /**
-     * @PostMapping("/user-messages/{id}/add") public String add(@RequestParam("file") MultipartFile file,
-     * @PathVariable Long id,
-     * @AuthenticationPrincipal User user,
-     * Model model,
-     * @Valid Message message,
-     * BindingResult bindingResult,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
-     * - add message from authorized people channel page.
-     */
-    @PostMapping("/user-messages/{id}/add")
-    public String add(@RequestParam("file") MultipartFile file,
-                      @PathVariable Long id,
-                      @AuthenticationPrincipal User user,
-                      Model model,
-                      @Valid Message message,
-                      BindingResult bindingResult,
-                      @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
-    ) throws IOException {
-        messageService.addMessage(file, user, model, message, bindingResult, pageable);
-
-        return "redirect:/user-messages/" + id;
-    }
-
-
-    /**
-     * @GetMapping("/user-messages/{author}/message={message}") String updateMessageGet(
-     * @AuthenticationPrincipal User currentUser,
-     * @PathVariable User author,
-     * Model model,
-     * @PathVariable Message message,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
-     * - updation message form.
-     */
-
-    @GetMapping("/user-messages/{author}/message={message}")
-    public String updateMessageGet(
-            @AuthenticationPrincipal User currentUser,
-            @PathVariable User author,
-            Model model,
-            @PathVariable Message message,
-            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable) {
-
-        Page<MessageDto> page = messageRepo.findAllByAuthor(currentUser, pageable, author);
-        model.addAttribute("isEditing", true);
-        model.addAttribute("user", author);
-        model.addAttribute("page", page);
-        model.addAttribute("isSubscriber", author.getSubscribers().contains(currentUser));
-        model.addAttribute("message", message);
-        model.addAttribute("isCurrentUser", currentUser.equals(author));
-        model.addAttribute("pageCount", page.getTotalPages());
-        return "userMessages";
-    }
-
-    /**
-     * PostMapping("/user-messages/{user}")
-     * public String updateMessage(@AuthenticationPrincipal User currentUser,
-     *
-     * @PathVariable Long user,
-     * @RequestParam("id") Message message,
-     * @RequestParam("text") String text,
-     * @RequestParam("tag") String tag,
-     * @RequestParam("file") MultipartFile file,
-     * Model model)
-     * Saving updated message.
-     */
-    @PostMapping("/user-messages/{user}")
-    public String updateMessage(@AuthenticationPrincipal User currentUser,
-                                @PathVariable Long user,
-                                @RequestParam("id") Message message,
-                                @RequestParam("text") String text,
-                                @RequestParam("tag") String tag,
-                                @RequestParam("file") MultipartFile file,
-                                Model model
-    ) throws IOException, NullPointerException {
-
-        try {
-            if (message.getAuthor().equals(currentUser)) {
-
-                if (!StringUtils.isEmpty(text)) {
-                    message.setText(text);
-                }
-                if (!StringUtils.isEmpty(tag)) {
-                    message.setTag(tag);
-                }
-                messageService.saveFile(file, message);
-                messageRepo.save(message);
-            }
-        } catch (NullPointerException e) {
-            model.addAttribute("idError", NOTHING_TO_CHANGE);
-        }
-
-        return "redirect:/user-messages/" + user;
-    }
-
-    /**
-     * @GetMapping("/user-messages/{author}/delete={delete}") public String deleteUserMessages(
-     * @AuthenticationPrincipal User currentUser,
-     * @PathVariable User author,
-     * Model model,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable, @PathVariable Long delete)
-     * -delete message
-     */
-    @GetMapping("/user-messages/{author}/delete={delete}")
-    public String deleteUserMessages(
-            @AuthenticationPrincipal User currentUser,
-            @PathVariable User author,
-            Model model,
-            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable, @PathVariable Long delete) {
-        Message message = messageRepo.findById(delete).get();
-        File file = new File("/uploads/" + message.getFilename());
-        file.delete();
-        messageRepo.delete(message);
-        Page<MessageDto> page = messageRepo.findAllByAuthor(currentUser, pageable, author);
-
-        model.addAttribute("user", author);
-        model.addAttribute("page", page);
-        model.addAttribute("isSubscriber", author.getSubscribers().contains(currentUser));
-        model.addAttribute("isCurrentUser", currentUser.equals(author));
-        model.addAttribute("pageCount", page.getTotalPages());
-
-        return "userMessages";
-    }
-
-    /**
-     * @GetMapping("/messages/{message}/like") public String like(@AuthenticationPrincipal User currentUser,
-     * @PathVariable Message message,
-     * RedirectAttributes redirectAttributes,
-     * @RequestHeader(required = false) String referer)
-     * like/unlike message
-     */
-    @GetMapping("/messages/{message}/like")
-    public String like(@AuthenticationPrincipal User currentUser,
-                       @PathVariable Message message,
-                       RedirectAttributes redirectAttributes,
-                       @RequestHeader(required = false) String referer) {
-        Set<User> likes = message.getLikes();
-        if (likes.contains(currentUser)) {
-            likes.remove(currentUser);
-        } else {
-            likes.add(currentUser);
-        }
-        UriComponents components = UriComponentsBuilder.fromHttpUrl(referer).build();
-
-        components
-                .getQueryParams()
-                .entrySet()
-                .forEach(pair -> redirectAttributes
-                        .addAttribute(pair.getKey(), pair.getValue()));
-        return "redirect:" + components.getPath();
-    }
-
-
-}
+package org.studyproject.metagram.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.FeedPage;
+import org.studyproject.metagram.domain.dto.MessageDto;
+import org.studyproject.metagram.domain.dto.SearchPage;
+import org.studyproject.metagram.domain.util.TagHelper;
+import org.studyproject.metagram.repos.MessageRepo;
+import org.studyproject.metagram.service.FeedFragmentCache;
+import org.studyproject.metagram.service.FeedPublisher;
+import org.studyproject.metagram.service.FeedVersion;
+import org.studyproject.metagram.service.MessageService;
+import org.studyproject.metagram.service.UserService;
+
+import javax.validation.Valid;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.studyproject.metagram.config.Literals.NOTHING_TO_CHANGE;
+
+@Controller
+public class MessagesController {
+
+    private final MessageRepo messageRepo;
+    private MessageService messageService;
+    private UserService userService;
+    private FeedFragmentCache feedFragmentCache;
+
+    @Autowired
+    public MessagesController(MessageRepo messageRepo, MessageService messageService, UserService userService,
+                              FeedFragmentCache feedFragmentCache) {
+        this.messageRepo = messageRepo;
+        this.messageService = messageService;
+        this.userService = userService;
+        this.feedFragmentCache = feedFragmentCache;
+    }
+
+    /**
+     * @GetMapping("/main") String main (@RequestParam(required = false, defaultValue = "") String filter,
+     * @RequestParam(required = false) Long before,
+     * @RequestParam(required = false) Long after,
+     * Model model,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+     * @CurrentUser User user) - get all page, with all messages and pagination.
+     * First page and ?before=/?after= cursors use keyset pagination and are served from FeedFragmentCache,
+     * ?page=N keeps offset pagination
+     */
+    @GetMapping("/main")
+    public String main(@RequestParam(required = false, defaultValue = "") String filter,
+                       @RequestParam(required = false) Long before,
+                       @RequestParam(required = false) Long after,
+                       Model model,
+                       @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+                       @CurrentUser User user) {
+        if (isKeyset(pageable, before, after)) {
+            int size = pageable.getPageSize();
+            Map<String, Object> variables = fragmentVariables("/main", filter, false);
+            String key = FeedFragmentCache.key("main", before, after, size, filter);
+            model.addAttribute("keyset", true);
+            String feed = StringUtils.isEmpty(filter) ? FeedVersion.ALL : FeedVersion.tagFeed(TagHelper.normalize(filter));
+            model.addAttribute("feedHtml", feedFragmentCache.render(key, feed,
+                    () -> messageService.messageList(filter, before, after, size, null), variables, user));
+        } else {
+            Page<MessageDto> page = messageService.messageList(filter, pageable, user);
+            model.addAttribute("pageCount", page.getTotalPages());
+            model.addAttribute("pageNumber", page.getNumber());
+            model.addAttribute("page", page);
+        }
+        model.addAttribute("feedUrl", "/main");
+        model.addAttribute("liveTopic", StringUtils.isEmpty(filter)
+                ? FeedPublisher.FEED_TOPIC : FeedPublisher.tagTopic(TagHelper.normalize(filter)));
+        model.addAttribute("filter", filter);
+        model.addAttribute("user", user);
+        return "main";
+    }
+
+
+    /**
+     * @GetMapping("/search") String search(@RequestParam(required = false, defaultValue = "") String q,
+     * @RequestParam(required = false) String cursor,
+     * Model model,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+     * @CurrentUser User user) - full-text search over messages text
+     */
+    @GetMapping("/search")
+    public String search(@RequestParam(required = false, defaultValue = "") String q,
+                         @RequestParam(required = false) String cursor,
+                         Model model,
+                         @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+                         @CurrentUser User user) {
+        if (StringUtils.isEmpty(q.trim())) {
+            return "redirect:/main";
+        }
+        SearchPage page = messageService.search(q, cursor, pageable.getPageSize(), user);
+        model.addAttribute("search", true);
+        model.addAttribute("page", page);
+        model.addAttribute("q", q);
+        model.addAttribute("user", user);
+        return "main";
+    }
+
+    /**
+     * @GetMapping("/timeline") String timeline(@RequestParam(required = false) Long before,
+     * @RequestParam(required = false) Long after,
+     * Model model,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+     * @CurrentUser User user) - messages from channels which user is subscribed to
+     */
+    @GetMapping("/timeline")
+    public String timeline(@RequestParam(required = false) Long before,
+                           @RequestParam(required = false) Long after,
+                           Model model,
+                           @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable,
+                           @CurrentUser User user) {
+        FeedPage page = messageService.timeline(before, after, pageable.getPageSize(), user);
+        model.addAttribute("keyset", true);
+        model.addAttribute("page", page);
+        model.addAttribute("feedUrl", "/timeline");
+        model.addAttribute("user", user);
+        return "main";
+    }
+
+    /**
+     * @PostMapping("/main") String add(@RequestParam("file") MultipartFile file,
+     * @CurrentUser User user,
+     * Model model,
+     * @Valid Message message,
+     * BindingResult bindingResult,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
+     * - adding message from main page form. return main page.
+     */
+    @PostMapping("/main")
+    public String add(@RequestParam("file") MultipartFile file,
+                      @CurrentUser User user,
+                      Model model,
+                      @Valid Message message,
+                      BindingResult bindingResult,
+                      @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
+    ) throws IOException {
+        messageService.addMessage(file, user, model, message, bindingResult, pageable);
+
+        return "main";
+    }
+
+    /**
+     * @GetMapping("/user-messages/{author}") String userMessages(
+     * @CurrentUser User currentUser,
+     * @PathVariable User author,
+     * @RequestParam(required = false) Long before,
+     * @RequestParam(required = false) Long after,
+     * Model model,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
+     * - get messages from specified author
+     */
+    @GetMapping("/user-messages/{author}")
+    public String userMessages(
+            @CurrentUser User currentUser,
+            @PathVariable User author,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            Model model,
+            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
+    ) {
+        addAuthorFeed(model, currentUser, author, before, after, pageable);
+        model.addAttribute("user", author);
+        model.addAttribute("isSubscriber", userService.isSubscribed(author, currentUser));
+        model.addAttribute("isCurrentUser", currentUser.equals(author));
+        return "userMessages";
+    }
+
+    /**
+     * @PostMapping("/user-messages/{id}/add") public String add(@RequestParam("file") MultipartFile file,
+     * @PathVariable Long id,
+     * @CurrentUser User user,
+     * Model model,
+     * @Valid Message message,
+     * BindingResult bindingResult,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
+     * - add message from authorized people channel page.
+     */
+    @PostMapping("/user-messages/{id}/add")
+    public String add(@RequestParam("file") MultipartFile file,
+                      @PathVariable Long id,
+                      @CurrentUser User user,
+                      Model model,
+                      @Valid Message message,
+                      BindingResult bindingResult,
+                      @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable
+    ) throws IOException {
+        messageService.addMessage(file, user, model, message, bindingResult, pageable);
+
+        return "redirect:/user-messages/" + id;
+    }
+
+
+    /**
+     * @GetMapping("/user-messages/{author}/message={message}") String updateMessageGet(
+     * @CurrentUser User currentUser,
+     * @PathVariable User author,
+     * Model model,
+     * @PathVariable Message message,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
+     * - updation message form.
+     */
+
+    @GetMapping("/user-messages/{author}/message={message}")
+    public String updateMessageGet(
+            @CurrentUser User currentUser,
+            @PathVariable User author,
+            Model model,
+            @PathVariable Message message,
+            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable) {
+
+        addAuthorFeed(model, currentUser, author, null, null, pageable);
+        model.addAttribute("isEditing", true);
+        model.addAttribute("user", author);
+        model.addAttribute("isSubscriber", userService.isSubscribed(author, currentUser));
+        model.addAttribute("message", message);
+        model.addAttribute("isCurrentUser", currentUser.equals(author));
+        return "userMessages";
+    }
+
+    /**
+     * PostMapping("/user-messages/{user}")
+     * public String updateMessage(@CurrentUser User currentUser,
+     *
+     * @PathVariable Long user,
+     * @RequestParam("id") Message message,
+     * @RequestParam("text") String text,
+     * @RequestParam("tag") String tag,
+     * @RequestParam("file") MultipartFile file,
+     * Model model)
+     * Saving updated message.
+     */
+    @PostMapping("/user-messages/{user}")
+    public String updateMessage(@CurrentUser User currentUser,
+                                @PathVariable Long user,
+                                @RequestParam("id") Message message,
+                                @RequestParam("text") String text,
+                                @RequestParam("tag") String tag,
+                                @RequestParam("file") MultipartFile file,
+                                Model model
+    ) throws IOException, NullPointerException {
+
+        try {
+            if (message.getAuthor().equals(currentUser)) {
+
+                if (!StringUtils.isEmpty(text)) {
+                    message.setText(text);
+                }
+                if (!StringUtils.isEmpty(tag)) {
+                    message.setTag(tag);
+                }
+                messageService.updateMessage(message, file);
+            }
+        } catch (NullPointerException e) {
+            model.addAttribute("idError", NOTHING_TO_CHANGE);
+        }
+
+        return "redirect:/user-messages/" + user;
+    }
+
+    /**
+     * @GetMapping("/user-messages/{author}/delete={delete}") public String deleteUserMessages(
+     * @CurrentUser User currentUser,
+     * @PathVariable User author,
+     * Model model,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable, @PathVariable Long delete)
+     * -delete message
+     */
+    @GetMapping("/user-messages/{author}/delete={delete}")
+    public String deleteUserMessages(
+            @CurrentUser User currentUser,
+            @PathVariable User author,
+            Model model,
+            @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable, @PathVariable Long delete)
+            throws IOException {
+        Message message = messageRepo.findById(delete).get();
+        messageService.deleteMessage(message);
+        addAuthorFeed(model, currentUser, author, null, null, pageable);
+
+        model.addAttribute("user", author);
+        model.addAttribute("isSubscriber", userService.isSubscribed(author, currentUser));
+        model.addAttribute("isCurrentUser", currentUser.equals(author));
+
+        return "userMessages";
+    }
+
+    /**
+     * @GetMapping("/messages/{message}/like") public String like(@CurrentUser User currentUser,
+     * @PathVariable("message") Long messageId,
+     * RedirectAttributes redirectAttributes,
+     * @RequestHeader(required = false) String referer)
+     * like/unlike message
+     */
+    @GetMapping("/messages/{message}/like")
+    public String like(@CurrentUser User currentUser,
+                       @PathVariable("message") Long messageId,
+                       RedirectAttributes redirectAttributes,
+                       @RequestHeader(required = false) String referer) {
+        messageService.like(currentUser, messageId);
+        UriComponents components = UriComponentsBuilder.fromHttpUrl(referer).build();
+
+        components
+                .getQueryParams()
+                .entrySet()
+                .forEach(pair -> redirectAttributes
+                        .addAttribute(pair.getKey(), pair.getValue()));
+        return "redirect:" + components.getPath();
+    }
+
+    /**
+     * keyset pagination is used for the first page and for ?before=/?after= cursors,
+     * explicit ?page=N links keep offset pagination
+     */
+    private boolean isKeyset(Pageable pageable, Long before, Long after) {
+        return pageable.getPageNumber() == 0 || before != null || after != null;
+    }
+
+    /**
+     * private void addAuthorFeed(Model model, User currentUser, User author, Long before, Long after, Pageable pageable)
+     * adds page of author messages and pager attributes to model
+     */
+    private void addAuthorFeed(Model model, User currentUser, User author, Long before, Long after, Pageable pageable) {
+        String feedUrl = "/user-messages/" + author.getId();
+        if (isKeyset(pageable, before, after)) {
+            int size = pageable.getPageSize();
+            boolean isCurrentUser = currentUser.equals(author);
+            Map<String, Object> variables = fragmentVariables(feedUrl, null, isCurrentUser);
+            String key = FeedFragmentCache.key("author", author.getId(), before, after, size, isCurrentUser);
+            model.addAttribute("keyset", true);
+            model.addAttribute("feedHtml", feedFragmentCache.render(key, FeedVersion.authorFeed(author.getId()),
+                    () -> messageService.messageListForUser(before, after, size, null, author), variables, currentUser));
+        } else {
+            Page<MessageDto> page = messageService.messageListForUser(pageable, currentUser, author);
+            model.addAttribute("page", page);
+            model.addAttribute("pageCount", page.getTotalPages());
+        }
+        model.addAttribute("feedUrl", feedUrl);
+        model.addAttribute("liveTopic", FeedPublisher.authorTopic(author.getId()));
+    }
+
+    /**
+     * model of cached messageList fragment, everything except page which is added by FeedFragmentCache
+     */
+    private Map<String, Object> fragmentVariables(String feedUrl, String filter, boolean isCurrentUser) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("keyset", true);
+        variables.put("feedUrl", feedUrl);
+        variables.put("filter", filter);
+        variables.put("isCurrentUser", isCurrentUser);
+        return variables;
+    }
+
+
+}
@@ -1,173 +1,209 @@
-package org.studyproject.metagram.controller;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.stereotype.Controller;
-import org.springframework.ui.Model;
-import org.springframework.web.bind.annotation.*;
-import org.studyproject.metagram.domain.Role;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.service.UserService;
-
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-
-@Controller
-@RequestMapping("/user")
-
-public class UserController {
-    private final UserService userService;
-
-    @Autowired
-    public UserController(UserService userService) {
-        this.userService = userService;
-    }
-
-    /**
-     * @GetMapping public String userList(Model model)
-     * returns list of all users
-     */
-    @GetMapping
-    public String userList(Model model) {
-        model.addAttribute("users", userService.findAll());
-        return "userList";
-    }
-
-    /**
-     * @PreAuthorize("hasAuthority('ADMIN')")
-     * @GetMapping("{user}") public String userEditForm(@PathVariable User user, Model model)
-     * editing any user form - only for admin role
-     */
-    @PreAuthorize("hasAuthority('ADMIN')")
-    @GetMapping("{user}")
-    public String userEditForm(@PathVariable User user, Model model) {
-        model.addAttribute("user", user);
-        List<Role> roles = Arrays.asList(Role.values());
-        model.addAttribute("roles", roles);
-
-        return "userEdit";
-    }
-
-    /**
-     * @PreAuthorize("hasAuthority('ADMIN')")
-     * @PostMapping public String userSave(
-     * @RequestParam String username,
-     * @RequestParam Map<String, String> form,
-     * @RequestParam("userId") User user
-     * public String userEditForm(@PathVariable User user, Model model)
-     * save edited user - only for admin role
-     */
-    @PreAuthorize("hasAuthority('ADMIN')")
-    @PostMapping
-    public String userSave(
-            @RequestParam String username,
-            @RequestParam Map<String, String> form,
-            @RequestParam("userId") User user) {
-
-        userService.save(user, username, form);
-
-        return "redirect:/user";
-    }
-
-    /**
-     * @PreAuthorize("hasAuthority('ADMIN')")
-     * @GetMapping("{user}/delete") public String userDelete(@PathVariable User user, Model model)
-     * deleting any user and all their posts - only for admin role
-     */
-    @PreAuthorize("hasAuthority('ADMIN')")
-    @GetMapping("{user}/delete")
-    public String userDelete(@PathVariable User user, Model model) {
-        userService.deleteUser(user);
-        model.addAttribute("users", userService.findAll());
-        return "userList";
-    }
-
-    /**
-     * @GetMapping("profile") public String getProfile(Model model, @AuthenticationPrincipal User user)
-     * profile page of authorized account and editing form
-     */
-    @GetMapping("profile")
-    public String getProfile(Model model, @AuthenticationPrincipal User user) {
-        model.addAttribute("user", user);
-        return "profile";
-    }
-
-    /**
-     * @PostMapping("profile") public String updateProfile(
-     * @AuthenticationPrincipal User user,
-     * @RequestParam String password,
-     * @RequestParam String email) {
-     * save updated profile of authorized account
-     */
-    @PostMapping("profile")
-    public String updateProfile(
-            @AuthenticationPrincipal User user,
-            @RequestParam String password,
-            @RequestParam String email) {
-        userService.updateProfile(user, password, email);
-        return "redirect:/user/profile";
-    }
-
-    /**
-     * @GetMapping("profile/delete") public String deleteProfile(Model model, @AuthenticationPrincipal User user)
-     * delete profile of authorized account
-     */
-    @GetMapping("profile/delete")
-    public String deleteProfile(Model model, @AuthenticationPrincipal User user) {
-        model.addAttribute("user", user);
-        userService.deleteUser(user);
-        SecurityContextHolder.clearContext();
-        return "redirect:/";
-    }
-
-    /**
-     * @GetMapping("subscribe/{user}") public String subscribe(
-     * @AuthenticationPrincipal User currentUser,
-     * @PathVariable User user)
-     * subscribe to another author
-     */
-    @GetMapping("subscribe/{user}")
-    public String subscribe(
-            @AuthenticationPrincipal User currentUser,
-            @PathVariable User user) {
-        userService.subscribe(currentUser, user);
-        return "redirect:/user-messages/" + user.getId();
-    }
-
-    /**
-     * @GetMapping("unsubscribe/{user}") public String unsubscribe(
-     * @AuthenticationPrincipal User currentUser,
-     * @PathVariable User user)
-     * unsubscribe from another author
-     */
-    @GetMapping("unsubscribe/{user}")
-    public String unsubscribe(
-            @AuthenticationPrincipal User currentUser,
-            @PathVariable User user) {
-        userService.unsubscribe(currentUser, user);
-        return "redirect:/user-messages/" + user.getId();
-    }
-
-    /**
-     * @GetMapping("{type}/{user}/list") public String userList(Model model,
-     * @PathVariable User user,
-     * @PathVariable String type)
-     * list of subscriptions/subscribers
-     */
-    @GetMapping("{type}/{user}/list")
-    public String userList(Model model,
-                           @PathVariable User user,
-                           @PathVariable String type) {
-        model.addAttribute("userChannel", user);
-        model.addAttribute("type", type);
-        if ("subscriptions".equals(type)) {
-            model.addAttribute("users", user.getSubscriptions());
-        } else {
-            model.addAttribute("users", user.getSubscribers());
-        }
-        return "subscriptions";
-    }
-}
+package org.studyproject.metagram.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.studyproject.metagram.domain.Role;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.UserDirectoryEntry;
+import org.studyproject.metagram.domain.dto.UserSummaryDto;
+import org.studyproject.metagram.service.UserService;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+@Controller
+@RequestMapping("/user")
+
+public class UserController {
+    private static final int DIRECTORY_PAGE_SIZE = 50;
+    private static final int RELATIONSHIPS_PAGE_SIZE = 50;
+    private final UserService userService;
+
+    @Autowired
+    public UserController(UserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * @GetMapping public String userList(Model model,
+     * @RequestParam(required = false, defaultValue = "") String q,
+     * @RequestParam(required = false) String after,
+     * @RequestParam(required = false) Long afterId)
+     * page of user directory, q is username prefix, after/afterId is the last user on previous page
+     */
+    @GetMapping
+    public String userList(Model model,
+                           @RequestParam(required = false, defaultValue = "") String q,
+                           @RequestParam(required = false) String after,
+                           @RequestParam(required = false) Long afterId) {
+        List<UserDirectoryEntry> users = userService.directory(q, after, afterId, DIRECTORY_PAGE_SIZE);
+        boolean hasNext = users.size() > DIRECTORY_PAGE_SIZE;
+        if (hasNext) {
+            users = users.subList(0, DIRECTORY_PAGE_SIZE);
+        }
+        model.addAttribute("users", users);
+        model.addAttribute("q", q);
+        model.addAttribute("next", hasNext ? users.get(users.size() - 1) : null);
+        return "userList";
+    }
+
+    /**
+     * @PreAuthorize("hasAuthority('ADMIN')")
+     * @GetMapping("export.csv") public void exportUsers(HttpServletResponse response)
+     * CSV export of all users streamed from database - only for admin role
+     */
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("export.csv")
+    public void exportUsers(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"");
+        userService.exportDirectory(response.getWriter());
+    }
+
+    /**
+     * @PreAuthorize("hasAuthority('ADMIN')")
+     * @GetMapping("{user}") public String userEditForm(@PathVariable User user, Model model)
+     * editing any user form - only for admin role
+     */
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("{user}")
+    public String userEditForm(@PathVariable User user, Model model) {
+        model.addAttribute("user", user);
+        List<Role> roles = Arrays.asList(Role.values());
+        model.addAttribute("roles", roles);
+
+        return "userEdit";
+    }
+
+    /**
+     * @PreAuthorize("hasAuthority('ADMIN')")
+     * @PostMapping public String userSave(
+     * @RequestParam String username,
+     * @RequestParam Map<String, String> form,
+     * @RequestParam("userId") User user
+     * public String userEditForm(@PathVariable User user, Model model)
+     * save edited user - only for admin role
+     */
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping
+    public String userSave(
+            @RequestParam String username,
+            @RequestParam Map<String, String> form,
+            @RequestParam("userId") User user) {
+
+        userService.save(user, username, form);
+
+        return "redirect:/user";
+    }
+
+    /**
+     * @PreAuthorize("hasAuthority('ADMIN')")
+     * @GetMapping("{user}/delete") public String userDelete(@PathVariable User user, Model model)
+     * deleting any user and all their posts - only for admin role
+     */
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("{user}/delete")
+    public String userDelete(@PathVariable User user, Model model) {
+        userService.deleteUser(user);
+        return "redirect:/user";
+    }
+
+    /**
+     * @GetMapping("profile") public String getProfile(Model model, @CurrentUser User user)
+     * profile page of authorized account and editing form
+     */
+    @GetMapping("profile")
+    public String getProfile(Model model, @CurrentUser User user) {
+        model.addAttribute("user", userService.findById(user.getId()));
+        return "profile";
+    }
+
+    /**
+     * @PostMapping("profile") public String updateProfile(
+     * @CurrentUser User user,
+     * @RequestParam String password,
+     * @RequestParam String email) {
+     * save updated profile of authorized account
+     */
+    @PostMapping("profile")
+    public String updateProfile(
+            @CurrentUser User user,
+            @RequestParam String password,
+            @RequestParam String email) {
+        userService.updateProfile(userService.findById(user.getId()), password, email);
+        return "redirect:/user/profile";
+    }
+
+    /**
+     * @GetMapping("profile/delete") public String deleteProfile(Model model, @CurrentUser User user)
+     * delete profile of authorized account
+     */
+    @GetMapping("profile/delete")
+    public String deleteProfile(Model model, @CurrentUser User user) {
+        User profile = userService.findById(user.getId());
+        model.addAttribute("user", profile);
+        userService.deleteUser(profile);
+        SecurityContextHolder.clearContext();
+        return "redirect:/";
+    }
+
+    /**
+     * @GetMapping("subscribe/{user}") public String subscribe(
+     * @CurrentUser User currentUser,
+     * @PathVariable User user)
+     * subscribe to another author
+     */
+    @GetMapping("subscribe/{user}")
+    public String subscribe(
+            @CurrentUser User currentUser,
+            @PathVariable User user) {
+        userService.subscribe(currentUser, user);
+        return "redirect:/user-messages/" + user.getId();
+    }
+
+    /**
+     * @GetMapping("unsubscribe/{user}") public String unsubscribe(
+     * @CurrentUser User currentUser,
+     * @PathVariable User user)
+     * unsubscribe from another author
+     */
+    @GetMapping("unsubscribe/{user}")
+    public String unsubscribe(
+            @CurrentUser User currentUser,
+            @PathVariable User user) {
+        userService.unsubscribe(currentUser, user);
+        return "redirect:/user-messages/" + user.getId();
+    }
+
+    /**
+     * @GetMapping("{type}/{user}/list") public String userList(Model model,
+     * @PathVariable User user,
+     * @PathVariable String type,
+     * @RequestParam(required = false) Long after)
+     * list of subscriptions/subscribers, ?after= is id of the last user on previous page
+     */
+    @GetMapping("{type}/{user}/list")
+    public String userList(Model model,
+                           @PathVariable User user,
+                           @PathVariable String type,
+                           @RequestParam(required = false) Long after) {
+        List<UserSummaryDto> users = userService.relationships(user, type, after, RELATIONSHIPS_PAGE_SIZE);
+        boolean hasNext = users.size() > RELATIONSHIPS_PAGE_SIZE;
+        if (hasNext) {
+            users = users.subList(0, RELATIONSHIPS_PAGE_SIZE);
+        }
+        model.addAttribute("userChannel", user);
+        model.addAttribute("type", type);
+        model.addAttribute("users", users);
+        model.addAttribute("nextCursor", hasNext ? users.get(users.size() - 1).getId() : null);
+        return "subscriptions";
+    }
+}
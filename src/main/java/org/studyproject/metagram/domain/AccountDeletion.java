@@ -0,0 +1,65 @@
+package org.studyproject.metagram.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Account deletion job. User is deactivated when job is queued, then messages, likes, subscriptions
+ * and files are removed in chunks by AccountDeletionService, progress is kept in counters.
+ * Failed job is retried from its progress after backoff, after account-deletion.max-attempts attempts it is FAILED.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "account_deletion")
+public class AccountDeletion {
+    public enum Status {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(name = "messages_deleted")
+    private long messagesDeleted;
+
+    @Column(name = "files_released")
+    private long filesReleased;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    private int attempts;
+
+    /**
+     * pending job is not claimed before this time, null when job has not failed yet
+     */
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    public AccountDeletion(Long userId, String username) {
+        this.userId = userId;
+        this.username = username;
+        this.status = Status.PENDING;
+        this.createdAt = Instant.now();
+        this.updatedAt = this.createdAt;
+    }
+}
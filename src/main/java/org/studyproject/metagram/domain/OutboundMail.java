@@ -0,0 +1,45 @@
+package org.studyproject.metagram.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Email waiting in outbound queue, row is deleted when email is sent.
+ * After mail.queue.max-attempts failed attempts email is marked as failed and is not retried.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "outbound_mail")
+public class OutboundMail {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    private String recipient;
+
+    private String subject;
+
+    @Column(columnDefinition = "text")
+    private String body;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    private boolean failed;
+
+    public OutboundMail(String recipient, String subject, String body) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.body = body;
+        this.nextAttemptAt = Instant.now();
+    }
+}
@@ -1,13 +1,13 @@
-package org.studyproject.metagram.domain;
-
-import org.springframework.security.core.GrantedAuthority;
-
-public enum Role implements GrantedAuthority {
-    USER, ADMIN;
-
-    @Override
-    public String getAuthority() {
-        return name();
-    }
-
-}
+package org.studyproject.metagram.domain;
+
+import org.springframework.security.core.GrantedAuthority;
+
+public enum Role implements GrantedAuthority {
+    USER, ADMIN;
+
+    @Override
+    public String getAuthority() {
+        return name();
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.studyproject.metagram.domain;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Uploaded file in content-addressed storage, name is "ab/cd/<sha-256>.<ext>".
+ * refCount is count of messages which reference the file.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "stored_file")
+public class StoredFile {
+    @Id
+    private String name;
+
+    private long size;
+
+    @Column(name = "ref_count")
+    private int refCount;
+}
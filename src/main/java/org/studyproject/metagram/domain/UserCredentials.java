@@ -0,0 +1,52 @@
+package org.studyproject.metagram.domain;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+
+/**
+ * Immutable snapshot of user for form login and remember-me: UserPrincipal with password hash and activation.
+ * It is cached by UserDetailsCache and never put in SecurityContext, successful authentication
+ * gets only its principal, see WebSecurityConfig.
+ */
+@Getter
+public final class UserCredentials implements UserDetails {
+    private static final long serialVersionUID = 1L;
+
+    private final UserPrincipal principal;
+    private final String password;
+    private final boolean enabled;
+
+    public UserCredentials(User user) {
+        this.principal = new UserPrincipal(user);
+        this.password = user.getPassword();
+        this.enabled = user.isActive();
+    }
+
+    @Override
+    public String getUsername() {
+        return principal.getUsername();
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return principal.getAuthorities();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
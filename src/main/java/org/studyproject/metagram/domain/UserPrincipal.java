@@ -0,0 +1,85 @@
+package org.studyproject.metagram.domain;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable session principal: id, username and roles of authenticated user, no password hash.
+ * It is kept in SecurityContext instead of User entity, so it is safe to share between threads and sessions,
+ * handlers get fresh User from toUser() or load the user by id. Login uses UserCredentials which wraps it.
+ */
+@Getter
+public final class UserPrincipal implements UserDetails {
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private final Set<Role> roles;
+
+    public UserPrincipal(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.roles = Collections.unmodifiableSet(user.getRoles() == null || user.getRoles().isEmpty()
+                ? EnumSet.noneOf(Role.class)
+                : EnumSet.copyOf(user.getRoles()));
+    }
+
+    /**
+     * public User toUser()
+     * new detached User with id, username and roles, other fields are not loaded
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setRoles(roles.isEmpty() ? EnumSet.noneOf(Role.class) : EnumSet.copyOf(roles));
+        user.setActive(true);
+        return user;
+    }
+
+    public boolean isAdmin() {
+        return roles.contains(Role.ADMIN);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return roles;
+    }
+
+    /**
+     * session principal never carries the password hash
+     */
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    /**
+     * only active users are authenticated, deactivation ends their sessions
+     */
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
@@ -1,31 +1,31 @@
-package org.studyproject.metagram.domain.dto;
-
-import com.fasterxml.jackson.annotation.JsonAlias;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-
-import java.util.Set;
-
-@JsonIgnoreProperties
-public class CaptchaResponceDto {
-    private boolean success;
-    @JsonAlias("error-codes")
-    private Set<String> errorCodes;
-
-    public boolean isSuccess() {
-        return success;
-    }
-
-    public void setSuccess(boolean success) {
-        this.success = success;
-    }
-
-    public Set<String> getErrorCodes() {
-        return errorCodes;
-    }
-
-    public void setErrorCodes(Set<String> errorCodes) {
-        this.errorCodes = errorCodes;
-    }
-
-
-}
+package org.studyproject.metagram.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.Set;
+
+@JsonIgnoreProperties
+public class CaptchaResponceDto {
+    private boolean success;
+    @JsonAlias("error-codes")
+    private Set<String> errorCodes;
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public Set<String> getErrorCodes() {
+        return errorCodes;
+    }
+
+    public void setErrorCodes(Set<String> errorCodes) {
+        this.errorCodes = errorCodes;
+    }
+
+
+}
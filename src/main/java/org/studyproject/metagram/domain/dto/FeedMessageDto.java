@@ -0,0 +1,45 @@
+package org.studyproject.metagram.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.util.MessageHelper;
+
+/**
+ * flat message for live feed updates and JSON feed API, author is referenced by id and name only.
+ * meLiked is absent in live updates, which are not user specific
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FeedMessageDto {
+    private final Long id;
+    private final String text;
+    private final String tag;
+    private final Long authorId;
+    private final String authorName;
+    private final String filename;
+    private final long likes;
+    private final Boolean meLiked;
+
+    public FeedMessageDto(Message message) {
+        this.id = message.getId();
+        this.text = message.getText();
+        this.tag = message.getTag();
+        this.authorId = message.getAuthor() != null ? message.getAuthor().getId() : null;
+        this.authorName = MessageHelper.getAuthorName(message.getAuthor());
+        this.filename = message.getFilename();
+        this.likes = message.getLikeCount();
+        this.meLiked = null;
+    }
+
+    public FeedMessageDto(MessageDto message) {
+        this.id = message.getId();
+        this.text = message.getText();
+        this.tag = message.getTag();
+        this.authorId = message.getAuthorId();
+        this.authorName = message.getAuthorName();
+        this.filename = message.getFilename();
+        this.likes = message.getLikes() != null ? message.getLikes() : 0;
+        this.meLiked = message.getMeLiked();
+    }
+}
@@ -0,0 +1,66 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One page of a feed read with keyset (seek) pagination.
+ * Instead of page numbers it carries cursors: olderCursor is used as ?before=, newerCursor as ?after=.
+ */
+@Getter
+public class FeedPage implements Iterable<MessageDto> {
+
+    private final List<MessageDto> content;
+    private final Long olderCursor;
+    private final Long newerCursor;
+
+    public FeedPage(List<MessageDto> content, Long olderCursor, Long newerCursor) {
+        this.content = content;
+        this.olderCursor = olderCursor;
+        this.newerCursor = newerCursor;
+    }
+
+    /**
+     * public static FeedPage of(List<MessageDto> rows, int size, Long before, Long after)
+     * builds page from size + 1 rows fetched by keyset query. Rows are sorted by id DESC when reading older
+     * messages and by id ASC when reading newer messages (after != null).
+     */
+    public static FeedPage of(List<MessageDto> rows, int size, Long before, Long after) {
+        boolean hasMore = rows.size() > size;
+        List<MessageDto> content = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        if (after != null) {
+            Collections.reverse(content);
+        }
+        if (content.isEmpty()) {
+            return new FeedPage(content, after != null ? after + 1 : null, null);
+        }
+
+        Long first = content.get(0).getId();
+        Long last = content.get(content.size() - 1).getId();
+        if (after != null) {
+            return new FeedPage(content, last, hasMore ? first : null);
+        }
+        return new FeedPage(content, hasMore ? last : null, before != null ? first : null);
+    }
+
+    public boolean hasOlder() {
+        return olderCursor != null;
+    }
+
+    public boolean hasNewer() {
+        return newerCursor != null;
+    }
+
+    public boolean isEmpty() {
+        return content.isEmpty();
+    }
+
+    @Override
+    public Iterator<MessageDto> iterator() {
+        return content.iterator();
+    }
+}
@@ -0,0 +1,24 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * page of JSON feed API: flat messages and cursors for ?before= and ?after=, null when there is no such page
+ */
+@Getter
+public class FeedResponse {
+    private final List<FeedMessageDto> items;
+    private final Long olderCursor;
+    private final Long newerCursor;
+
+    public FeedResponse(FeedPage page) {
+        this.items = page.getContent().stream()
+                .map(FeedMessageDto::new)
+                .collect(Collectors.toList());
+        this.olderCursor = page.getOlderCursor();
+        this.newerCursor = page.getNewerCursor();
+    }
+}
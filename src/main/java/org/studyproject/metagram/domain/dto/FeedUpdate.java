@@ -0,0 +1,17 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * coalesced changes of one feed topic since previous push: new messages and current like counts by message id
+ */
+@Getter
+public class FeedUpdate {
+    private final List<FeedMessageDto> messages = new ArrayList<>();
+    private final Map<Long, Long> likes = new HashMap<>();
+}
@@ -0,0 +1,21 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+/**
+ * state of message likes after like/unlike of current user
+ */
+@Getter
+public class LikeDto {
+    private final Long messageId;
+    private final Long authorId;
+    private final long likes;
+    private final boolean liked;
+
+    public LikeDto(Long messageId, Long authorId, long likes, boolean liked) {
+        this.messageId = messageId;
+        this.authorId = authorId;
+        this.likes = likes;
+        this.liked = liked;
+    }
+}
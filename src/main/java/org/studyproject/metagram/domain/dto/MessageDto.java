@@ -1,32 +1,49 @@
-package org.studyproject.metagram.domain.dto;
-
-import lombok.Getter;
-import org.studyproject.metagram.domain.Message;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.domain.util.MessageHelper;
-
-@Getter
-public class MessageDto {
-
-    private Long id;
-    private String text;
-    private String tag;
-    private User author;
-    private String filename;
-    private Long likes;
-    private Boolean meLiked;
-
-    public MessageDto(Message message, Long likes, Boolean meLiked) {
-        this.id = message.getId();
-        this.text = message.getText();
-        this.tag = message.getTag();
-        this.author = message.getAuthor();
-        this.filename = message.getFilename();
-        this.likes = likes;
-        this.meLiked = meLiked;
-    }
-
-    public String getAuthorName() {
-        return MessageHelper.getAuthorName(author);
-    }
-}
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.studyproject.metagram.domain.util.MessageHelper;
+
+/**
+ * Flat read model of feed card, built by MessageRepo.MESSAGE_DTO constructor expression from scalar columns,
+ * so feed queries load no Message or User entities into persistence context.
+ */
+@Getter
+public class MessageDto {
+
+    private Long id;
+    private String text;
+    private String tag;
+    private String filename;
+    private Long authorId;
+    private String authorName;
+    private Long likes;
+    @Setter
+    private Boolean meLiked;
+
+    /**
+     * feed queries build dto without meLiked, it is resolved for the whole page afterwards
+     */
+    public MessageDto(Long id, String text, String tag, String filename, Long authorId, String authorName,
+                      Long likes) {
+        this.id = id;
+        this.text = text;
+        this.tag = tag;
+        this.filename = filename;
+        this.authorId = authorId;
+        this.authorName = MessageHelper.getAuthorName(authorName);
+        this.likes = likes;
+        this.meLiked = false;
+    }
+
+    public MessageDto(MessageDto other) {
+        this.id = other.id;
+        this.text = other.text;
+        this.tag = other.tag;
+        this.filename = other.filename;
+        this.authorId = other.authorId;
+        this.authorName = other.authorName;
+        this.likes = other.likes;
+        this.meLiked = other.meLiked;
+    }
+}
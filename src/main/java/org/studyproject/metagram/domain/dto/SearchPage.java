@@ -0,0 +1,24 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of full-text search results ordered by relevance.
+ * nextCursor is "rank:id" of the last result, it is passed back as ?cursor= to read the next page.
+ */
+@Getter
+public class SearchPage extends FeedPage {
+
+    private final String nextCursor;
+
+    public SearchPage(List<MessageDto> content, String nextCursor) {
+        super(content, null, null);
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,14 @@
+package org.studyproject.metagram.domain.dto;
+
+/**
+ * row of admin user directory, roles are comma separated. Native query projection, no entity is loaded
+ */
+public interface UserDirectoryEntry {
+    Long getId();
+
+    String getUsername();
+
+    String getRoles();
+
+    boolean isActive();
+}
@@ -0,0 +1,17 @@
+package org.studyproject.metagram.domain.dto;
+
+import lombok.Getter;
+
+/**
+ * user row of subscribers/subscriptions lists, built by constructor expression without loading the entity
+ */
+@Getter
+public class UserSummaryDto {
+    private final Long id;
+    private final String username;
+
+    public UserSummaryDto(Long id, String username) {
+        this.id = id;
+        this.username = username;
+    }
+}
@@ -1,10 +1,14 @@
-package org.studyproject.metagram.domain.util;
-
-import org.studyproject.metagram.domain.User;
-
-public abstract class MessageHelper {
-    public static String getAuthorName(User user) {
-        return user != null ? user.getUsername() : "none";
-
-    }
-}
+package org.studyproject.metagram.domain.util;
+
+import org.studyproject.metagram.domain.User;
+
+public abstract class MessageHelper {
+    public static String getAuthorName(User user) {
+        return getAuthorName(user != null ? user.getUsername() : null);
+
+    }
+
+    public static String getAuthorName(String username) {
+        return username != null ? username : "none";
+    }
+}
@@ -0,0 +1,67 @@
+package org.studyproject.metagram.domain.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public abstract class TagHelper {
+    public static final int MAX_TAGS = 32;
+    public static final int MAX_TAG_LENGTH = 255;
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s,#]+");
+    private static final Pattern HASHTAG = Pattern.compile("#(\\w+)", Pattern.UNICODE_CHARACTER_CLASS);
+
+    /**
+     * public static Set<String> parseTags(String tag, String text)
+     * returns normalized tags from tag field (separated by spaces, commas or #) and #hashtags from text
+     */
+    public static Set<String> parseTags(String tag, String text) {
+        Set<String> tags = new LinkedHashSet<>();
+        if (tag != null) {
+            for (String part : SEPARATORS.split(tag)) {
+                addTag(tags, part);
+            }
+        }
+        if (text != null) {
+            Matcher matcher = HASHTAG.matcher(text);
+            while (matcher.find()) {
+                addTag(tags, matcher.group(1));
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * public static String normalize(String tag)
+     * normalized form of tag which is stored in message_tag and used for search
+     */
+    public static String normalize(String tag) {
+        String normalized = tag.trim().toLowerCase(Locale.ROOT);
+        while (normalized.startsWith("#")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized.length() > MAX_TAG_LENGTH ? normalized.substring(0, MAX_TAG_LENGTH) : normalized;
+    }
+
+    /**
+     * public static List<String> splitTags(String tags)
+     * tags joined by comma in database, normalized tags contain no separators
+     */
+    public static List<String> splitTags(String tags) {
+        if (tags == null || tags.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(tags.split(","));
+    }
+
+    private static void addTag(Set<String> tags, String tag) {
+        String normalized = normalize(tag);
+        if (!normalized.isEmpty() && tags.size() < MAX_TAGS) {
+            tags.add(normalized);
+        }
+    }
+}
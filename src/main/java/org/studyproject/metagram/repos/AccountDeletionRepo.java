@@ -0,0 +1,28 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.studyproject.metagram.domain.AccountDeletion;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountDeletionRepo extends CrudRepository<AccountDeletion, Long> {
+
+    boolean existsByUserIdAndStatusIn(Long userId, Collection<AccountDeletion.Status> statuses);
+
+    /**
+     * marks the oldest due pending job, or running job without progress since staleBefore, as running and returns it.
+     * Pending jobs which wait for retry are due from next_attempt_at. Rows locked by other instances are skipped.
+     * Must be called in transaction
+     */
+    @Query(value = "update account_deletion set status = 'RUNNING', updated_at = :now " +
+            "where id = (select id from account_deletion " +
+            "    where (status = 'PENDING' and (next_attempt_at is null or next_attempt_at <= :now)) " +
+            "       or (status = 'RUNNING' and updated_at < :staleBefore) " +
+            "    order by id limit 1 for update skip locked) " +
+            "returning *", nativeQuery = true)
+    List<AccountDeletion> claimNext(@Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+}
@@ -0,0 +1,62 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.studyproject.metagram.repos.NativeDml.statement;
+
+/**
+ * feed_version rows, one per feed key. Feeds are passed joined by comma, feed keys contain no commas
+ * (see TagHelper). Rows are inserted and locked in order of feed key, so concurrent moves cannot deadlock
+ */
+@Repository
+public class FeedVersionRepo {
+    private static final String MOVE = "insert into feed_version (feed, content_version, likes_version, updated_at) " +
+            "select f.feed, case when :content then v.version else 0 end, " +
+            "       case when :likes then v.version else 0 end, now() " +
+            "from unnest(string_to_array(:feeds, ',')) as f(feed), " +
+            "     (select nextval('feed_version_seq') as version) v " +
+            "order by f.feed " +
+            "on conflict (feed) do update set " +
+            "content_version = case when :content then excluded.content_version else feed_version.content_version end, " +
+            "likes_version = case when :likes then excluded.likes_version else feed_version.likes_version end, " +
+            "updated_at = excluded.updated_at";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * moves content and/or likes version of distinct feeds to the next value of feed_version_seq.
+     * Joins transaction of the change, so the version becomes visible with the changed rows
+     */
+    @Transactional
+    public int move(String feeds, boolean content, boolean likes) {
+        return statement(entityManager, MOVE, "feed_version")
+                .setParameter("feeds", feeds)
+                .setParameter("content", content)
+                .setParameter("likes", likes)
+                .executeUpdate();
+    }
+
+    /**
+     * returns one row: content version of contentFeed, likes version of likesFeed, both at least the versions
+     * of everyFeed, and last update of these rows or null. Feed without row has version 0
+     */
+    @Transactional(readOnly = true)
+    public Object[] find(String contentFeed, String likesFeed, String everyFeed) {
+        List<?> rows = entityManager.createNativeQuery(
+                "select coalesce(max(case when feed in (:contentFeed, :everyFeed) then content_version end), 0), " +
+                        "coalesce(max(case when feed in (:likesFeed, :everyFeed) then likes_version end), 0), " +
+                        "max(updated_at) " +
+                        "from feed_version where feed in (:contentFeed, :likesFeed, :everyFeed)")
+                .setParameter("contentFeed", contentFeed)
+                .setParameter("likesFeed", likesFeed)
+                .setParameter("everyFeed", everyFeed)
+                .getResultList();
+        return (Object[]) rows.get(0);
+    }
+}
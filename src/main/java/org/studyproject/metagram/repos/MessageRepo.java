@@ -1,50 +1,140 @@
-package org.studyproject.metagram.repos;
-
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.CrudRepository;
-import org.springframework.data.repository.query.Param;
-import org.studyproject.metagram.domain.Message;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.domain.dto.MessageDto;
-
-import java.util.List;
-import java.util.Optional;
-
-public interface MessageRepo extends CrudRepository<Message, Long> {
-
-    @Query("select new org.studyproject.metagram.domain.dto.MessageDto(" +
-            "   m, " +
-            "   count(ml), " +
-            "   sum(case when ml = :user then 1 else 0 end) > 0" +
-            ") " +
-            "from Message m left join m.likes ml " +
-            "group by m")
-    Page<MessageDto> findAll(Pageable pageable, @Param("user") User user);
-
-    @Query("select new org.studyproject.metagram.domain.dto.MessageDto(" +
-            "   m, " +
-            "   count(ml), " +
-            "   sum(case when ml = :user then 1 else 0 end) > 0" +
-            ") " +
-            "from Message m left join m.likes ml " +
-            "where m.tag=:tag " +
-            "group by m")
-    Page<MessageDto> findByTag(@Param("tag") String tag, Pageable pageable, @Param("user") User user);
-
-    @Query("select new org.studyproject.metagram.domain.dto.MessageDto(" +
-            "   m, " +
-            "   count(ml), " +
-            "   sum(case when ml = :user then 1 else 0 end) > 0" +
-            ") " +
-            "from Message m left join m.likes ml " +
-            "where m.author=:author " +
-            "group by m")
-    Page<MessageDto> findAllByAuthor(@Param("user") User user, Pageable pageable, @Param("author") User author);
-
-
-    List<Message> findAllByAuthor(User user);
-
-    Optional<Message> findById(Long id);
-}
+package org.studyproject.metagram.repos;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.MessageDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+public interface MessageRepo extends CrudRepository<Message, Long>, MessageRepoCustom {
+    /**
+     * flat feed row: only columns shown by templates, author is joined for id and name, no entity is loaded
+     */
+    String MESSAGE_DTO = "select new org.studyproject.metagram.domain.dto.MessageDto(" +
+            "m.id, m.text, m.tag, m.filename, a.id, a.username, m.likeCount) " +
+            "from Message m left join m.author a ";
+
+    @Query(MESSAGE_DTO)
+    Page<MessageDto> findAll(Pageable pageable);
+
+    @Query(MESSAGE_DTO + "join m.tags t " +
+            "where t = :tag")
+    Page<MessageDto> findByTag(@Param("tag") String tag, Pageable pageable);
+
+    @Query(MESSAGE_DTO +
+            "where m.author=:author")
+    Page<MessageDto> findAllByAuthor(Pageable pageable, @Param("author") User author);
+
+    @Query(MESSAGE_DTO +
+            "where m.id > :after and m.id < :before")
+    List<MessageDto> findAllKeyset(@Param("after") Long after, @Param("before") Long before, Pageable pageable);
+
+    @Query(MESSAGE_DTO + "join m.tags t " +
+            "where t = :tag and m.id > :after and m.id < :before")
+    List<MessageDto> findByTagKeyset(@Param("tag") String tag, @Param("after") Long after, @Param("before") Long before,
+                                     Pageable pageable);
+
+    @Query(MESSAGE_DTO +
+            "where m.author=:author and m.id > :after and m.id < :before")
+    List<MessageDto> findAllByAuthorKeyset(@Param("after") Long after, @Param("before") Long before,
+                                           Pageable pageable, @Param("author") User author);
+
+    @Query(MESSAGE_DTO + "join m.likes u " +
+            "where u = :user and m.id > :after and m.id < :before")
+    List<MessageDto> findLikedKeyset(@Param("after") Long after, @Param("before") Long before,
+                                     Pageable pageable, @Param("user") User user);
+
+    @Query(MESSAGE_DTO +
+            "where m.id in :ids")
+    List<MessageDto> findAllByIds(@Param("ids") Collection<Long> ids, Sort sort);
+
+    @Query("select m.id from Message m " +
+            "where m.author.id in :authorIds and m.id > :after and m.id < :before")
+    List<Long> findIdsByAuthorIds(@Param("authorIds") Collection<Long> authorIds,
+                                  @Param("after") Long after, @Param("before") Long before, Pageable pageable);
+
+    /**
+     * full-text search over message text with message_text_fts_idx, ordered by relevance.
+     * Only the newest candidates matches are ranked, so cost of ts_rank does not grow with count of matches
+     * of common words. Keyset cursor is (rank, id) of the last row of previous page, returns rows of [id, rank]
+     */
+    @Query(value = "select id, rank from (" +
+            "   select c.id, ts_rank(to_tsvector('simple', c.text), plainto_tsquery('simple', :query)) as rank " +
+            "   from (" +
+            "       select m.id, m.text from message m " +
+            "       where to_tsvector('simple', m.text) @@ plainto_tsquery('simple', :query) " +
+            "       order by m.id desc " +
+            "       limit :candidates) c" +
+            ") hits " +
+            "where rank < cast(:rank as real) or (rank = cast(:rank as real) and id < :before) " +
+            "order by rank desc, id desc " +
+            "limit :limit", nativeQuery = true)
+    List<Object[]> search(@Param("query") String query, @Param("rank") Float rank, @Param("before") Long before,
+                          @Param("candidates") int candidates, @Param("limit") int limit);
+
+    /**
+     * ids of messages from the given page which are liked by user, one query per page instead of join over all likes
+     */
+    @Query("select m.id from Message m join m.likes u where u = :user and m.id in :ids")
+    Set<Long> findLikedIds(@Param("user") User user, @Param("ids") Collection<Long> ids);
+
+    /**
+     * {id, like_count} rows of messages from the given page, like counts are not part of cached feed fragments
+     */
+    @Query("select m.id, m.likeCount from Message m where m.id in :ids")
+    List<Object[]> findLikeCounts(@Param("ids") Collection<Long> ids);
+
+    /**
+     * names from the given batch which are referenced by messages, used by orphaned upload collection
+     */
+    @Query("select distinct m.filename from Message m where m.filename in :names")
+    Set<String> findReferencedFilenames(@Param("names") Collection<String> names);
+
+    /**
+     * next chunk of author messages as {id, filename} rows, used by account deletion
+     */
+    @Query(value = "select id, filename from message where user_id = :authorId order by id limit :limit",
+            nativeQuery = true)
+    List<Object[]> findChunkByAuthorId(@Param("authorId") Long authorId, @Param("limit") int limit);
+
+    /**
+     * {message_id, tag} rows of given messages
+     */
+    @Query(value = "select message_id, tag from message_tag where message_id in :ids", nativeQuery = true)
+    List<Object[]> findTagPairs(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select distinct tag from message_tag where message_id in :ids", nativeQuery = true)
+    List<String> findTagsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * likes message when user has not liked it yet or unlikes it otherwise and moves like_count in one statement,
+     * returns single row {like_count, liked, author id, comma separated tags} or no rows when message does not exist
+     */
+    @Transactional
+    @Query(value = "with removed as (" +
+            "    delete from message_likes where message_id = :messageId and user_id = :userId returning 1), " +
+            "added as (" +
+            "    insert into message_likes (message_id, user_id) " +
+            "    select m.id, :userId from message m where m.id = :messageId and not exists (select 1 from removed) " +
+            "    on conflict do nothing returning 1) " +
+            "update message set like_count = like_count + (select count(*) from added) - (select count(*) from removed) " +
+            "where id = :messageId " +
+            "returning like_count, not exists (select 1 from removed), user_id, " +
+            "(select string_agg(tag, ',') from message_tag where message_id = :messageId)", nativeQuery = true)
+    List<Object[]> toggleLike(@Param("messageId") Long messageId, @Param("userId") Long userId);
+
+    @Query("select coalesce(max(m.id), 0) from Message m")
+    Long findMaxId();
+
+    Optional<Message> findById(Long id);
+}
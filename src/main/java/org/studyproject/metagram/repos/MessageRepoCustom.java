@@ -0,0 +1,27 @@
+package org.studyproject.metagram.repos;
+
+import java.util.Collection;
+
+public interface MessageRepoCustom {
+
+    /**
+     * deletes messages with their likes and tags by set-based statements
+     */
+    int deleteAllByIds(Collection<Long> ids);
+
+    /**
+     * removes up to limit likes given by user and decrements like_count of liked messages,
+     * returns count of updated messages, 0 when user has no likes left
+     */
+    int releaseLikesByUser(Long userId, int limit);
+
+    /**
+     * recount likes for messages with id in (fromId, toId], returns count of repaired rows
+     */
+    int reconcileLikeCounts(Long fromId, Long toId);
+
+    /**
+     * reset counters of messages in (fromId, toId] which have no likes at all
+     */
+    int resetOrphanLikeCounts(Long fromId, Long toId);
+}
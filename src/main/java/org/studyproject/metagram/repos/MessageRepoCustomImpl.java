@@ -0,0 +1,71 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+
+import static org.studyproject.metagram.repos.NativeDml.statement;
+
+/**
+ * set-based statements over message, message_likes and message_tag, see NativeDml
+ */
+public class MessageRepoCustomImpl implements MessageRepoCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int deleteAllByIds(Collection<Long> ids) {
+        return statement(entityManager,
+                "with likes as (delete from message_likes where message_id in :ids), " +
+                        "tags as (delete from message_tag where message_id in :ids) " +
+                        "delete from message where id in :ids",
+                "message_likes", "message_tag", "message")
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+
+    @Override
+    public int releaseLikesByUser(Long userId, int limit) {
+        return statement(entityManager,
+                "with removed as (" +
+                        "    delete from message_likes where (message_id, user_id) in (" +
+                        "        select message_id, user_id from message_likes where user_id = :userId limit :limit) " +
+                        "    returning message_id) " +
+                        "update message m set like_count = m.like_count - c.cnt " +
+                        "from (select message_id, count(*) cnt from removed group by message_id) c " +
+                        "where m.id = c.message_id",
+                "message_likes", "message")
+                .setParameter("userId", userId)
+                .setParameter("limit", limit)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int reconcileLikeCounts(Long fromId, Long toId) {
+        return statement(entityManager,
+                "update message m set like_count = c.cnt " +
+                        "from (select ml.message_id, count(*) cnt from message_likes ml " +
+                        "      where ml.message_id > :fromId and ml.message_id <= :toId group by ml.message_id) c " +
+                        "where m.id = c.message_id and m.like_count <> c.cnt",
+                "message")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public int resetOrphanLikeCounts(Long fromId, Long toId) {
+        return statement(entityManager,
+                "update message m set like_count = 0 " +
+                        "where m.id > :fromId and m.id <= :toId and m.like_count <> 0 " +
+                        "and not exists (select 1 from message_likes ml where ml.message_id = m.id)",
+                "message")
+                .setParameter("fromId", fromId)
+                .setParameter("toId", toId)
+                .executeUpdate();
+    }
+}
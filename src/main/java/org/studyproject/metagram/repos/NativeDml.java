@@ -0,0 +1,28 @@
+package org.studyproject.metagram.repos;
+
+import org.hibernate.query.NativeQuery;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Native insert, update and delete statements with declared query spaces.
+ * Hibernate drops every second-level cache region after native statement which does not declare the tables
+ * it changes, with query spaces only regions mapped to these tables are dropped.
+ */
+final class NativeDml {
+
+    private NativeDml() {
+    }
+
+    /**
+     * static NativeQuery<?> statement(EntityManager entityManager, String sql, String... tables)
+     * native statement which changes only the given tables
+     */
+    static NativeQuery<?> statement(EntityManager entityManager, String sql, String... tables) {
+        NativeQuery<?> query = entityManager.createNativeQuery(sql).unwrap(NativeQuery.class);
+        for (String table : tables) {
+            query.addSynchronizedQuerySpace(table);
+        }
+        return query;
+    }
+}
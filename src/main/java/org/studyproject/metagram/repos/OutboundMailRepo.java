@@ -0,0 +1,37 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.studyproject.metagram.domain.OutboundMail;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboundMailRepo extends CrudRepository<OutboundMail, Long> {
+
+    /**
+     * claims batch of due emails by moving their next_attempt_at to leaseUntil, rows locked by other workers
+     * are skipped. Locks are held only until commit of the calling transaction, the lease keeps other workers
+     * away while the batch is sent, emails of a crashed worker become due again when the lease ends
+     */
+    @Transactional
+    @Query(value = "update outbound_mail set next_attempt_at = :leaseUntil " +
+            "where id in (" +
+            "    select id from outbound_mail " +
+            "    where failed = false and next_attempt_at <= :now " +
+            "    order by id " +
+            "    limit :limit " +
+            "    for update skip locked) " +
+            "returning *", nativeQuery = true)
+    List<OutboundMail> claimDueBatch(@Param("now") Instant now,
+                                     @Param("leaseUntil") Instant leaseUntil,
+                                     @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from OutboundMail m where m.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
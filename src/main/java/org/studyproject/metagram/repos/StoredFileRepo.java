@@ -0,0 +1,26 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.studyproject.metagram.domain.StoredFile;
+
+public interface StoredFileRepo extends CrudRepository<StoredFile, String>, StoredFileRepoCustom {
+
+    @Transactional
+    @Modifying
+    @Query("update StoredFile f set f.refCount = f.refCount - 1 where f.name = :name and f.refCount > 0")
+    int release(@Param("name") String name);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StoredFile f where f.name = :name and f.refCount = 0")
+    int deleteUnreferenced(@Param("name") String name);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StoredFile f where f.name = :name")
+    int deleteByName(@Param("name") String name);
+}
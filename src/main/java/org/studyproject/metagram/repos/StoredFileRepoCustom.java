@@ -0,0 +1,9 @@
+package org.studyproject.metagram.repos;
+
+public interface StoredFileRepoCustom {
+
+    /**
+     * inserts file with one reference or adds reference to existing file
+     */
+    int acquire(String name, long size);
+}
@@ -0,0 +1,25 @@
+package org.studyproject.metagram.repos;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.studyproject.metagram.repos.NativeDml.statement;
+
+public class StoredFileRepoCustomImpl implements StoredFileRepoCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int acquire(String name, long size) {
+        return statement(entityManager,
+                "insert into stored_file (name, size, ref_count) values (:name, :size, 1) " +
+                        "on conflict (name) do update set ref_count = stored_file.ref_count + 1",
+                "stored_file")
+                .setParameter("name", name)
+                .setParameter("size", size)
+                .executeUpdate();
+    }
+}
@@ -1,10 +1,75 @@
-package org.studyproject.metagram.repos;
-
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.studyproject.metagram.domain.User;
-
-public interface UserRepo extends JpaRepository<User, Long> {
-    User findByUsername(String username);
-
-    User findByActivationCode(String code);
-}
+package org.studyproject.metagram.repos;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.UserDirectoryEntry;
+import org.studyproject.metagram.domain.dto.UserSummaryDto;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface UserRepo extends JpaRepository<User, Long>, UserRepoCustom {
+    User findByUsername(String username);
+
+    User findByActivationCode(String code);
+
+    @Query("select s.id from User u join u.subscribers s where u.id = :channelId")
+    List<Long> findSubscriberIds(@Param("channelId") Long channelId, Pageable pageable);
+
+    @Query("select c.id from User u join u.subscriptions c where u.id = :subscriberId")
+    List<Long> findSubscriptionIds(@Param("subscriberId") Long subscriberId);
+
+    @Query(value = "select exists (select 1 from user_subscriptions " +
+            "where channel_id = :channelId and subscriber_id = :subscriberId)", nativeQuery = true)
+    boolean isSubscribed(@Param("channelId") Long channelId, @Param("subscriberId") Long subscriberId);
+
+    /**
+     * subscribers of channel with id greater than after, ordered by id, uses (channel_id, subscriber_id) index
+     */
+    @Query("select new org.studyproject.metagram.domain.dto.UserSummaryDto(s.id, s.username) " +
+            "from User u join u.subscribers s where u.id = :channelId and s.id > :after order by s.id")
+    List<UserSummaryDto> findSubscribers(@Param("channelId") Long channelId, @Param("after") Long after,
+                                         Pageable pageable);
+
+    /**
+     * channels of subscriber with id greater than after, ordered by id, uses (subscriber_id, channel_id) index
+     */
+    @Query("select new org.studyproject.metagram.domain.dto.UserSummaryDto(c.id, c.username) " +
+            "from User u join u.subscriptions c where u.id = :subscriberId and c.id > :after order by c.id")
+    List<UserSummaryDto> findSubscriptions(@Param("subscriberId") Long subscriberId, @Param("after") Long after,
+                                           Pageable pageable);
+
+    @Modifying
+    @Query("update User u set u.active = false where u.id = :id")
+    int deactivate(@Param("id") Long id);
+
+    /**
+     * page of user directory ordered by (username, id) after the given pair, filtered by username prefix
+     * (LIKE pattern with escaped wildcards), served by usr_username_c_id_idx
+     */
+    @Query(value = "select u.id as id, u.username as username, u.active as active, " +
+            "(select string_agg(r.roles, ',' order by r.roles) from user_role r where r.user_id = u.id) as roles " +
+            "from usr u " +
+            "where u.username collate \"C\" like :prefix " +
+            "and (u.username collate \"C\", u.id) > (cast(:afterName as varchar) collate \"C\", :afterId) " +
+            "order by u.username collate \"C\", u.id limit :limit", nativeQuery = true)
+    List<UserDirectoryEntry> findDirectoryPage(@Param("prefix") String prefix, @Param("afterName") String afterName,
+                                               @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * whole user directory as cursor-backed stream for CSV export, must be consumed inside transaction
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "select u.id as id, u.username as username, u.active as active, " +
+            "(select string_agg(r.roles, ',' order by r.roles) from user_role r where r.user_id = u.id) as roles " +
+            "from usr u order by u.id", nativeQuery = true)
+    Stream<UserDirectoryEntry> streamDirectory();
+}
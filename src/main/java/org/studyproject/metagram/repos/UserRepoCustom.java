@@ -0,0 +1,38 @@
+package org.studyproject.metagram.repos;
+
+import java.util.List;
+
+public interface UserRepoCustom {
+
+    /**
+     * returns 1 when subscription is added, 0 when it exists already
+     */
+    int addSubscription(Long channelId, Long subscriberId);
+
+    /**
+     * returns 1 when subscription is removed, 0 when it does not exist
+     */
+    int removeSubscription(Long channelId, Long subscriberId);
+
+    /**
+     * changes counters of both users, cached users must be evicted by caller
+     */
+    int updateSubscriptionCounts(Long channelId, Long subscriberId, long delta);
+
+    /**
+     * removes up to limit subscribers of channel and decrements their subscription_count,
+     * returns ids of changed subscribers, cached users must be evicted by caller
+     */
+    List<Long> releaseSubscribers(Long userId, int limit);
+
+    /**
+     * removes up to limit subscriptions of user and decrements subscriber_count of channels,
+     * returns ids of changed channels, cached users must be evicted by caller
+     */
+    List<Long> releaseSubscriptions(Long userId, int limit);
+
+    /**
+     * deletes user row with its roles, messages and relationships must be deleted already
+     */
+    int deleteAccount(Long id);
+}
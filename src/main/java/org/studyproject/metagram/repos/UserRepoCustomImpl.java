@@ -0,0 +1,98 @@
+package org.studyproject.metagram.repos;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.studyproject.metagram.repos.NativeDml.statement;
+
+/**
+ * set-based statements over usr, user_role and user_subscriptions, see NativeDml.
+ * Subscription statements declare only user_subscriptions, so a follow does not drop the whole User region,
+ * callers evict users whose counters changed from EntityCache
+ */
+public class UserRepoCustomImpl implements UserRepoCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int addSubscription(Long channelId, Long subscriberId) {
+        return statement(entityManager,
+                "insert into user_subscriptions (channel_id, subscriber_id) values (:channelId, :subscriberId) " +
+                        "on conflict do nothing",
+                "user_subscriptions")
+                .setParameter("channelId", channelId)
+                .setParameter("subscriberId", subscriberId)
+                .executeUpdate();
+    }
+
+    @Override
+    public int removeSubscription(Long channelId, Long subscriberId) {
+        return statement(entityManager,
+                "delete from user_subscriptions where channel_id = :channelId and subscriber_id = :subscriberId",
+                "user_subscriptions")
+                .setParameter("channelId", channelId)
+                .setParameter("subscriberId", subscriberId)
+                .executeUpdate();
+    }
+
+    @Override
+    public int updateSubscriptionCounts(Long channelId, Long subscriberId, long delta) {
+        return statement(entityManager,
+                "update usr set " +
+                        "subscriber_count = subscriber_count + case when id = :channelId then :delta else 0 end, " +
+                        "subscription_count = subscription_count + case when id = :subscriberId then :delta else 0 end " +
+                        "where id in (:channelId, :subscriberId)",
+                "user_subscriptions")
+                .setParameter("channelId", channelId)
+                .setParameter("subscriberId", subscriberId)
+                .setParameter("delta", delta)
+                .executeUpdate();
+    }
+
+    @Override
+    public List<Long> releaseSubscribers(Long userId, int limit) {
+        return ids(statement(entityManager,
+                "with removed as (" +
+                        "    delete from user_subscriptions where channel_id = :userId and subscriber_id in (" +
+                        "        select subscriber_id from user_subscriptions where channel_id = :userId limit :limit) " +
+                        "    returning subscriber_id) " +
+                        "update usr u set subscription_count = u.subscription_count - 1 " +
+                        "from removed where u.id = removed.subscriber_id returning u.id",
+                "user_subscriptions")
+                .setParameter("userId", userId)
+                .setParameter("limit", limit)
+                .getResultList());
+    }
+
+    @Override
+    public List<Long> releaseSubscriptions(Long userId, int limit) {
+        return ids(statement(entityManager,
+                "with removed as (" +
+                        "    delete from user_subscriptions where subscriber_id = :userId and channel_id in (" +
+                        "        select channel_id from user_subscriptions where subscriber_id = :userId limit :limit) " +
+                        "    returning channel_id) " +
+                        "update usr u set subscriber_count = u.subscriber_count - 1 " +
+                        "from removed where u.id = removed.channel_id returning u.id",
+                "user_subscriptions")
+                .setParameter("userId", userId)
+                .setParameter("limit", limit)
+                .getResultList());
+    }
+
+    @Override
+    public int deleteAccount(Long id) {
+        return statement(entityManager,
+                "with roles as (delete from user_role where user_id = :id) delete from usr where id = :id",
+                "user_role", "usr")
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    private static List<Long> ids(List<?> rows) {
+        return rows.stream()
+                .map(row -> ((Number) row).longValue())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,235 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.studyproject.metagram.domain.AccountDeletion;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.repos.AccountDeletionRepo;
+import org.studyproject.metagram.repos.MessageRepo;
+import org.studyproject.metagram.repos.UserRepo;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Background account deletion.
+ * Request only deactivates the user, ends its sessions and queues AccountDeletion job. The job removes likes given
+ * by the user, subscriptions and messages with set-based deletes of account-deletion.chunk-size rows, every chunk
+ * in its own short transaction, and releases uploaded files after the chunk is committed.
+ * Jobs are resumable: a job without progress for account-deletion.stale-after-ms is picked up again.
+ * Failed job is retried with exponential backoff from account-deletion.backoff-ms, after
+ * account-deletion.max-attempts attempts it stays FAILED.
+ */
+@Slf4j
+@Service
+public class AccountDeletionService {
+    private static final long MAX_BACKOFF_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final AccountDeletionRepo accountDeletionRepo;
+    private final MessageRepo messageRepo;
+    private final UserRepo userRepo;
+    private final UploadStorage uploadStorage;
+    private final ThumbnailService thumbnailService;
+    private final HotTagCache hotTagCache;
+    private final FeedVersion feedVersion;
+    private final TimelineService timelineService;
+    private final EntityCache entityCache;
+    private final FindByIndexNameSessionRepository<? extends Session> sessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${account-deletion.chunk-size:1000}")
+    private int chunkSize;
+    @Value("${account-deletion.stale-after-ms:600000}")
+    private long staleAfter;
+    @Value("${account-deletion.max-attempts:8}")
+    private int maxAttempts;
+    @Value("${account-deletion.backoff-ms:60000}")
+    private long backoff;
+
+    @Autowired
+    public AccountDeletionService(AccountDeletionRepo accountDeletionRepo,
+                                  MessageRepo messageRepo,
+                                  UserRepo userRepo,
+                                  UploadStorage uploadStorage,
+                                  ThumbnailService thumbnailService,
+                                  HotTagCache hotTagCache,
+                                  FeedVersion feedVersion,
+                                  TimelineService timelineService,
+                                  EntityCache entityCache,
+                                  FindByIndexNameSessionRepository<? extends Session> sessionRepository,
+                                  TransactionTemplate transactionTemplate) {
+        this.accountDeletionRepo = accountDeletionRepo;
+        this.messageRepo = messageRepo;
+        this.userRepo = userRepo;
+        this.uploadStorage = uploadStorage;
+        this.thumbnailService = thumbnailService;
+        this.hotTagCache = hotTagCache;
+        this.feedVersion = feedVersion;
+        this.timelineService = timelineService;
+        this.entityCache = entityCache;
+        this.sessionRepository = sessionRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * public void enqueue(User user)
+     * deactivates user, ends its sessions and queues deletion job unless one is queued already
+     */
+    @Transactional
+    public void enqueue(User user) {
+        userRepo.deactivate(user.getId());
+        boolean queued = accountDeletionRepo.existsByUserIdAndStatusIn(user.getId(),
+                Arrays.asList(AccountDeletion.Status.PENDING, AccountDeletion.Status.RUNNING));
+        if (!queued) {
+            accountDeletionRepo.save(new AccountDeletion(user.getId(), user.getUsername()));
+        }
+        sessionRepository.findByPrincipalName(user.getUsername()).keySet().forEach(sessionRepository::deleteById);
+    }
+
+    /**
+     * public void processQueue()
+     * runs queued jobs one by one until queue is empty
+     */
+    @Scheduled(fixedDelayString = "${account-deletion.poll-interval-ms:5000}")
+    public void processQueue() {
+        AccountDeletion job;
+        while ((job = claimNext()) != null) {
+            try {
+                run(job);
+            } catch (IOException | RuntimeException e) {
+                reschedule(job, e);
+            }
+        }
+    }
+
+    /**
+     * failed job goes back to queue with exponential backoff, chunks are idempotent and it resumes
+     * from what is left. After max-attempts attempts job stays FAILED
+     */
+    private void reschedule(AccountDeletion job, Exception error) {
+        int attempts = job.getAttempts() + 1;
+        job.setAttempts(attempts);
+        job.setLastError(truncate(String.valueOf(error.getMessage())));
+        if (attempts >= maxAttempts) {
+            job.setStatus(AccountDeletion.Status.FAILED);
+            log.error("Account deletion {} of user {} failed after {} attempts",
+                    job.getId(), job.getUserId(), attempts, error);
+        } else {
+            long delay = Math.min(MAX_BACKOFF_MS, backoff << Math.min(attempts - 1, 20));
+            job.setStatus(AccountDeletion.Status.PENDING);
+            job.setNextAttemptAt(Instant.now().plusMillis(delay));
+            log.warn("Account deletion {} of user {} failed, attempt {} of {}, retry in {} ms",
+                    job.getId(), job.getUserId(), attempts, maxAttempts, delay, error);
+        }
+        saveProgress(job);
+    }
+
+    private AccountDeletion claimNext() {
+        Instant now = Instant.now();
+        List<AccountDeletion> claimed = inTransaction(() ->
+                accountDeletionRepo.claimNext(now, now.minusMillis(staleAfter)));
+        return claimed.isEmpty() ? null : claimed.get(0);
+    }
+
+    private void run(AccountDeletion job) throws IOException {
+        Long userId = job.getUserId();
+        log.info("Account deletion {} of user {} started", job.getId(), userId);
+
+        while (inTransaction(() -> messageRepo.releaseLikesByUser(userId, chunkSize)) > 0) {
+            feedVersion.allChanged();
+            saveProgress(job);
+        }
+        while (inTransaction(() -> evictUsers(userRepo.releaseSubscribers(userId, chunkSize))) > 0) {
+            saveProgress(job);
+        }
+        while (inTransaction(() -> evictUsers(userRepo.releaseSubscriptions(userId, chunkSize))) > 0) {
+            saveProgress(job);
+        }
+
+        List<String> filenames = new ArrayList<>();
+        Set<String> tags = new HashSet<>();
+        while (deleteMessagesChunk(job, filenames, tags)) {
+            for (String filename : filenames) {
+                if (uploadStorage.release(filename)) {
+                    thumbnailService.delete(filename);
+                }
+            }
+            job.setFilesReleased(job.getFilesReleased() + filenames.size());
+            feedVersion.allChanged();
+            timelineService.onChannelDeleted(userId);
+            saveProgress(job);
+            filenames.clear();
+        }
+        hotTagCache.invalidate(tags);
+
+        inTransaction(() -> userRepo.deleteAccount(userId));
+        job.setStatus(AccountDeletion.Status.DONE);
+        saveProgress(job);
+        log.info("Account deletion {} of user {} done: {} messages, {} files",
+                job.getId(), userId, job.getMessagesDeleted(), job.getFilesReleased());
+    }
+
+    /**
+     * deletes next chunk of user messages, fills filenames of deleted messages and their tags,
+     * returns false when user has no messages left
+     */
+    private boolean deleteMessagesChunk(AccountDeletion job, List<String> filenames, Set<String> tags) {
+        Integer deleted = inTransaction(() -> {
+            List<Object[]> rows = messageRepo.findChunkByAuthorId(job.getUserId(), chunkSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            List<Long> ids = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                ids.add(((Number) row[0]).longValue());
+                if (row[1] != null && !((String) row[1]).isEmpty()) {
+                    filenames.add((String) row[1]);
+                }
+            }
+            tags.addAll(messageRepo.findTagsByIds(ids));
+            messageRepo.deleteAllByIds(ids);
+            job.setMessagesDeleted(job.getMessagesDeleted() + ids.size());
+            job.setUpdatedAt(Instant.now());
+            accountDeletionRepo.save(job);
+            return ids.size();
+        });
+        return deleted != null && deleted > 0;
+    }
+
+    /**
+     * stores counters and status, updated_at shows that the job is alive
+     */
+    /**
+     * drops cached users whose subscription counters were changed, returns their count
+     */
+    private int evictUsers(List<Long> ids) {
+        entityCache.evictUser(ids.toArray(new Long[0]));
+        return ids.size();
+    }
+
+    private void saveProgress(AccountDeletion job) {
+        job.setUpdatedAt(Instant.now());
+        inTransaction(() -> accountDeletionRepo.save(job));
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 1024 ? message.substring(0, 1024) : message;
+    }
+}
@@ -0,0 +1,101 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Second-level cache of User, User.roles and Message, regions are configured in application.conf.
+ * Entity saves keep the cache current. Native statements declare the tables they change (see NativeDml),
+ * so Hibernate drops only regions of these tables. Like toggle and subscription counters change cached rows
+ * without dropping their regions, changed messages and users are evicted here, again after commit so concurrent readers
+ * cannot put rows of the old transaction back. Region statistics
+ * are logged every entity-cache.stats-log-ms and exported over JMX by the cache provider.
+ */
+@Slf4j
+@Component
+public class EntityCache {
+    private final Cache cache;
+    private final Statistics statistics;
+
+    @Autowired
+    public EntityCache(EntityManagerFactory entityManagerFactory) {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.cache = sessionFactory.getCache();
+        this.statistics = sessionFactory.getStatistics();
+    }
+
+    /**
+     * public void evictUser(Long... ids)
+     * drops cached users, roles are not changed by counters and stay cached
+     */
+    public void evictUser(Long... ids) {
+        for (Long id : ids) {
+            if (id != null) {
+                evictNowAndAfterCommit(() -> cache.evictEntityData(User.class, id));
+            }
+        }
+    }
+
+    /**
+     * public void evictMessage(Long id)
+     * drops cached message
+     */
+    public void evictMessage(Long id) {
+        if (id != null) {
+            evictNowAndAfterCommit(() -> cache.evictEntityData(Message.class, id));
+        }
+    }
+
+    /**
+     * public Map<String, CacheRegionStatistics> stats()
+     * hit, miss and put counters of every region since start
+     */
+    public Map<String, CacheRegionStatistics> stats() {
+        Map<String, CacheRegionStatistics> regions = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            regions.put(region, statistics.getDomainDataRegionStatistics(region));
+        }
+        return regions;
+    }
+
+    private static void evictNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${entity-cache.stats-log-ms:300000}")
+    public void logStats() {
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        stats().forEach((region, stats) -> {
+            long requests = stats.getHitCount() + stats.getMissCount();
+            if (requests > 0) {
+                log.info("Entity cache {}: size={}, hits={}, misses={}, hitRate={}, puts={}",
+                        region, stats.getElementCountInMemory(), stats.getHitCount(), stats.getMissCount(),
+                        String.format("%.3f", (double) stats.getHitCount() / requests), stats.getPutCount());
+            }
+        });
+    }
+}
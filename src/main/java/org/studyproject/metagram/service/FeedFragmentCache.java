@@ -0,0 +1,187 @@
+package org.studyproject.metagram.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.FeedPage;
+import org.studyproject.metagram.domain.dto.MessageDto;
+import org.studyproject.metagram.repos.MessageRepo;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Rendered HTML of blocks/messageList for keyset feed pages.
+ * Fragment is rendered once per feed type, cursor and content version of its feed with a like slot instead of
+ * the like button of every message and split at the slots, per request only like counts and liked ids of the page
+ * are loaded and the parts are joined with rendered like buttons. Slot is an HTML comment, user text is escaped
+ * by th:text and cannot contain one. Entry of older version is re-rendered on next request, so message create,
+ * edit and delete invalidate pages of feeds of this message only, likes invalidate nothing.
+ */
+@Component
+public class FeedFragmentCache {
+    private static final String TEMPLATE = "blocks/messageList";
+    private static final Set<String> SELECTORS = Collections.singleton("messageList");
+    /**
+     * like slot rendered by blocks/messageList when likeMarkers is set, followed by message id and SLOT_END
+     */
+    private static final String SLOT_START = "<!--like:";
+    private static final String SLOT_END = "-->";
+
+    private final ITemplateEngine templateEngine;
+    private final MessageRepo messageRepo;
+    private final FeedVersion feedVersion;
+    private final Cache<String, Fragment> fragments;
+
+    @Autowired
+    public FeedFragmentCache(ITemplateEngine templateEngine,
+                             MessageRepo messageRepo,
+                             FeedVersion feedVersion,
+                             @Value("${fragment-cache.max-entries:500}") long maxEntries,
+                             @Value("${fragment-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.templateEngine = templateEngine;
+        this.messageRepo = messageRepo;
+        this.feedVersion = feedVersion;
+        this.fragments = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * rendered HTML split at like slots, slots[i] is message id of like button between parts[i] and parts[i + 1]
+     */
+    private static class Fragment {
+        private final long version;
+        private final List<String> parts;
+        private final List<Long> slots;
+        private final List<Long> ids;
+
+        private Fragment(long version, List<String> parts, List<Long> slots, List<Long> ids) {
+            this.version = version;
+            this.parts = parts;
+            this.slots = slots;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * public static String key(String feed, Object... parts)
+     * cache key of feed page, parts are cursors, page size and every other value the fragment depends on.
+     * Free text part like tag filter goes last, so it cannot shift other parts
+     */
+    public static String key(String feed, Object... parts) {
+        StringBuilder key = new StringBuilder(feed);
+        for (Object part : parts) {
+            key.append(':').append(part);
+        }
+        return key.toString();
+    }
+
+    /**
+     * public String render(String key, String feed, Supplier<FeedPage> loader, Map<String, Object> variables, User user)
+     * returns messageList HTML with like counts and like state of user. Loader is called only when page
+     * is not cached or feed (see FeedVersion) has changed since it was rendered, its rows need no meLiked
+     */
+    public String render(String key, String feed, Supplier<FeedPage> loader, Map<String, Object> variables, User user) {
+        Fragment fragment = fragments.getIfPresent(key);
+        long version = feedVersion.contentVersion(feed);
+        if (fragment == null || fragment.version != version) {
+            fragment = renderFragment(version, loader, variables);
+            fragments.put(key, fragment);
+        }
+        if (fragment.ids.isEmpty()) {
+            return injectLikes(fragment, Collections.emptyMap(), Collections.emptySet());
+        }
+        Map<Long, Long> likes = new HashMap<>();
+        for (Object[] row : messageRepo.findLikeCounts(fragment.ids)) {
+            likes.put((Long) row[0], (Long) row[1]);
+        }
+        Set<Long> liked = user == null
+                ? Collections.emptySet()
+                : messageRepo.findLikedIds(user, fragment.ids);
+        return injectLikes(fragment, likes, liked);
+    }
+
+    private Fragment renderFragment(long version, Supplier<FeedPage> loader, Map<String, Object> variables) {
+        FeedPage page = loader.get();
+        Map<String, Object> model = new HashMap<>(variables);
+        model.put("page", page);
+        model.put("likeMarkers", true);
+
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        HttpServletRequest request = attributes.getRequest();
+        WebContext context = new WebContext(request, new NoSessionUrlResponse(attributes.getResponse()),
+                request.getServletContext(), LocaleContextHolder.getLocale(), model);
+        String html = templateEngine.process(TEMPLATE, SELECTORS, context);
+        List<Long> ids = page.getContent().stream()
+                .map(MessageDto::getId)
+                .collect(Collectors.toList());
+        List<String> parts = new ArrayList<>();
+        List<Long> slots = new ArrayList<>();
+        int from = 0;
+        int start;
+        while ((start = html.indexOf(SLOT_START, from)) >= 0) {
+            int end = html.indexOf(SLOT_END, start);
+            parts.add(html.substring(from, start));
+            slots.add(Long.valueOf(html.substring(start + SLOT_START.length(), end)));
+            from = end + SLOT_END.length();
+        }
+        parts.add(html.substring(from));
+        return new Fragment(version, parts, slots, ids);
+    }
+
+    /**
+     * like button of blocks/messageList, same markup as the template renders without likeMarkers
+     */
+    private static String injectLikes(Fragment fragment, Map<Long, Long> likes, Set<Long> liked) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < fragment.slots.size(); i++) {
+            Long id = fragment.slots.get(i);
+            Long count = likes.get(id);
+            result.append(fragment.parts.get(i))
+                    .append("<i class=\"").append(liked.contains(id) ? "fas fa-heart" : "far fa-heart")
+                    .append("\" data-likes-id=\"").append(id).append("\">")
+                    .append(count == null ? 0 : count)
+                    .append("</i>");
+        }
+        return result.append(fragment.parts.get(fragment.slots.size())).toString();
+    }
+
+    /**
+     * cached HTML is shared between users, so links must never carry session id of the rendering request
+     */
+    private static class NoSessionUrlResponse extends HttpServletResponseWrapper {
+        private NoSessionUrlResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public String encodeURL(String url) {
+            return url;
+        }
+
+        @Override
+        public String encodeRedirectURL(String url) {
+            return url;
+        }
+    }
+}
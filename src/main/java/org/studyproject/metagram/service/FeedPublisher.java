@@ -0,0 +1,158 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriUtils;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.dto.FeedMessageDto;
+import org.studyproject.metagram.domain.dto.FeedUpdate;
+import org.studyproject.metagram.domain.dto.LikeDto;
+import org.studyproject.metagram.repos.MessageRepo;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes live feed changes to STOMP topics /topic/feed, /topic/tag/{tag} and /topic/author/{id}.
+ * Changes are buffered and sent once per feed.publish-interval-ms as one FeedUpdate per topic: like changes
+ * of the same message collapse to its latest count and at most feed.max-pending-messages new messages
+ * wait for push, so bursts cost clients one frame per interval.
+ */
+@Slf4j
+@Service
+public class FeedPublisher {
+    public static final String FEED_TOPIC = "/topic/feed";
+    private static final String TAG_TOPIC = "/topic/tag/";
+    private static final String AUTHOR_TOPIC = "/topic/author/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageRepo messageRepo;
+    private final Queue<PendingMessage> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private final Map<Long, LikeDto> likes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    @Value("${feed.max-pending-messages:200}")
+    private int maxPendingMessages;
+
+    @Autowired
+    public FeedPublisher(SimpMessagingTemplate messagingTemplate,
+                         MessageRepo messageRepo,
+                         @Value("${feed.publish-interval-ms:1000}") long interval) {
+        this.messagingTemplate = messagingTemplate;
+        this.messageRepo = messageRepo;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "feed-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static String tagTopic(String tag) {
+        return TAG_TOPIC + UriUtils.encodePathSegment(tag, StandardCharsets.UTF_8);
+    }
+
+    public static String authorTopic(Long authorId) {
+        return AUTHOR_TOPIC + authorId;
+    }
+
+    /**
+     * public void messageCreated(Message message)
+     * queues new message for feed, its tags and author topics
+     */
+    public void messageCreated(Message message) {
+        if (pendingMessages.incrementAndGet() > maxPendingMessages) {
+            pendingMessages.decrementAndGet();
+            return;
+        }
+        messages.add(new PendingMessage(new FeedMessageDto(message), new HashSet<>(message.getTags())));
+    }
+
+    /**
+     * public void likesChanged(LikeDto like)
+     * queues current like count of message, replaces not yet pushed count of the same message
+     */
+    public void likesChanged(LikeDto like) {
+        likes.put(like.getMessageId(), like);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void flush() {
+        try {
+            Map<String, FeedUpdate> updates = new HashMap<>();
+            PendingMessage pending;
+            while ((pending = messages.poll()) != null) {
+                pendingMessages.decrementAndGet();
+                for (String topic : topics(pending.message.getAuthorId(), pending.tags)) {
+                    updates.computeIfAbsent(topic, key -> new FeedUpdate()).getMessages().add(pending.message);
+                }
+            }
+
+            if (!likes.isEmpty()) {
+                List<LikeDto> changed = new ArrayList<>(likes.size());
+                for (Long id : new ArrayList<>(likes.keySet())) {
+                    LikeDto like = likes.remove(id);
+                    if (like != null) {
+                        changed.add(like);
+                    }
+                }
+                Map<Long, Set<String>> tags = tagsOf(changed);
+                for (LikeDto like : changed) {
+                    Set<String> messageTags = tags.getOrDefault(like.getMessageId(), Collections.emptySet());
+                    for (String topic : topics(like.getAuthorId(), messageTags)) {
+                        updates.computeIfAbsent(topic, key -> new FeedUpdate()).getLikes()
+                                .put(like.getMessageId(), like.getLikes());
+                    }
+                }
+            }
+
+            updates.forEach(messagingTemplate::convertAndSend);
+        } catch (RuntimeException e) {
+            log.error("Live feed push failed", e);
+        }
+    }
+
+    private Map<Long, Set<String>> tagsOf(List<LikeDto> changed) {
+        Set<Long> ids = new HashSet<>();
+        for (LikeDto like : changed) {
+            ids.add(like.getMessageId());
+        }
+        Map<Long, Set<String>> tags = new HashMap<>();
+        for (Object[] row : messageRepo.findTagPairs(ids)) {
+            tags.computeIfAbsent(((Number) row[0]).longValue(), key -> new HashSet<>()).add((String) row[1]);
+        }
+        return tags;
+    }
+
+    private static List<String> topics(Long authorId, Set<String> tags) {
+        List<String> topics = new ArrayList<>(tags.size() + 2);
+        topics.add(FEED_TOPIC);
+        if (authorId != null) {
+            topics.add(authorTopic(authorId));
+        }
+        for (String tag : tags) {
+            topics.add(tagTopic(tag));
+        }
+        return topics;
+    }
+
+    private static class PendingMessage {
+        private final FeedMessageDto message;
+        private final Set<String> tags;
+
+        private PendingMessage(FeedMessageDto message, Set<String> tags) {
+            this.message = message;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.studyproject.metagram.service;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.repos.FeedVersionRepo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Versions of feed content. Every feed (all messages, tag, author, liked by user) has content version,
+ * which is moved by message create, edit and delete, and likes version, which is moved by like and unlike.
+ * Feed responses use them as validators, so unchanged feeds are answered with 304 without running feed queries,
+ * rendered fragments depend on content version only.
+ * <p>
+ * Versions are rows of feed_version shared by all nodes, values of feed_version_seq. They are moved in the
+ * transaction of the change, or right after it when the change was committed already, so a reader never sees
+ * a new version with old rows. Every like and message change locks the row of all messages feed until commit.
+ */
+@Component
+public class FeedVersion {
+    public static final String ALL = "all";
+    /**
+     * row moved by changes which are not bound to feeds, like account deletion or rename
+     */
+    private static final String EVERY = "*";
+
+    private final FeedVersionRepo feedVersionRepo;
+
+    @Autowired
+    public FeedVersion(FeedVersionRepo feedVersionRepo) {
+        this.feedVersionRepo = feedVersionRepo;
+    }
+
+    @Getter
+    public static class Validator {
+        private final String etag;
+        private final long lastModified;
+
+        private Validator(String etag, long lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public static String tagFeed(String tag) {
+        return "tag:" + tag;
+    }
+
+    public static String authorFeed(Long authorId) {
+        return "author:" + authorId;
+    }
+
+    public static String likedFeed(Long userId) {
+        return "liked:" + userId;
+    }
+
+    /**
+     * public void messageChanged(Message message)
+     * message was created, edited or deleted, moves content of all messages, author and tag feeds
+     */
+    public void messageChanged(Message message) {
+        Long authorId = message.getAuthor() == null ? null : message.getAuthor().getId();
+        feedVersionRepo.move(feeds(authorId, message.getTags()), true, false);
+    }
+
+    /**
+     * public void messageChanged(Message message, Collection<String> oldTags)
+     * edited message, feeds of tags which were removed change too
+     */
+    public void messageChanged(Message message, Collection<String> oldTags) {
+        Long authorId = message.getAuthor() == null ? null : message.getAuthor().getId();
+        List<String> tags = new ArrayList<>(oldTags);
+        tags.addAll(message.getTags());
+        feedVersionRepo.move(feeds(authorId, tags), true, false);
+    }
+
+    /**
+     * public void likesChanged(Long authorId, Collection<String> tags, Long userId)
+     * user liked or unliked message, moves likes of message feeds and content of feed liked by user
+     */
+    public void likesChanged(Long authorId, Collection<String> tags, Long userId) {
+        feedVersionRepo.move(feeds(authorId, tags), false, true);
+        feedVersionRepo.move(likedFeed(userId), true, false);
+    }
+
+    /**
+     * public void allChanged()
+     * moves every feed, used when change cannot be bound to feeds
+     */
+    public void allChanged() {
+        feedVersionRepo.move(EVERY, true, true);
+    }
+
+    /**
+     * public long contentVersion(String feed)
+     */
+    public long contentVersion(String feed) {
+        return ((Number) feedVersionRepo.find(feed, feed, EVERY)[0]).longValue();
+    }
+
+    /**
+     * public Validator validator(String contentFeed, String likesFeed, Long userId)
+     * strong ETag and Last-Modified of feed for user, meLiked flags make feeds user specific.
+     * Rows of feed follow content of contentFeed, like counts follow likes of likesFeed
+     */
+    public Validator validator(String contentFeed, String likesFeed, Long userId) {
+        Object[] row = feedVersionRepo.find(contentFeed, likesFeed, EVERY);
+        String etag = "\"" + row[0] + "-" + row[1] + "-" + userId + "\"";
+        return new Validator(etag, row[2] == null ? -1 : ((Date) row[2]).getTime());
+    }
+
+    /**
+     * distinct feed keys of message in sorted order, joined for FeedVersionRepo.move
+     */
+    private static String feeds(Long authorId, Collection<String> tags) {
+        Set<String> feeds = new TreeSet<>();
+        feeds.add(ALL);
+        if (authorId != null) {
+            feeds.add(authorFeed(authorId));
+        }
+        for (String tag : tags) {
+            feeds.add(tagFeed(tag));
+        }
+        return String.join(",", feeds);
+    }
+}
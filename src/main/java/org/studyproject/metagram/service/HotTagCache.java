@@ -0,0 +1,54 @@
+package org.studyproject.metagram.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.studyproject.metagram.domain.dto.MessageDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory cache of first page rows for the most requested tags.
+ * Rows are user independent (meLiked is resolved afterwards), entries are invalidated when a message
+ * with the tag is created or edited and expire after tag-cache.ttl-seconds to refresh like counters.
+ */
+@Component
+public class HotTagCache {
+    private final Cache<String, List<MessageDto>> firstPages;
+
+    public HotTagCache(@Value("${tag-cache.max-tags:1000}") long maxTags,
+                       @Value("${tag-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.firstPages = Caffeine.newBuilder()
+                .maximumSize(maxTags)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * public List<MessageDto> firstPage(String tag, int size, Function<String, List<MessageDto>> loader)
+     * returns copies of cached rows, so callers may set meLiked on them
+     */
+    public List<MessageDto> firstPage(String tag, int size, Function<String, List<MessageDto>> loader) {
+        List<MessageDto> rows = firstPages.get(tag + ":" + size, key -> loader.apply(tag));
+        return rows.stream()
+                .map(MessageDto::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * public void invalidate(Collection<String> tags)
+     * drops cached pages of all sizes for given tags
+     */
+    public void invalidate(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        firstPages.asMap().keySet()
+                .removeIf(key -> tags.contains(key.substring(0, key.lastIndexOf(':'))));
+    }
+}
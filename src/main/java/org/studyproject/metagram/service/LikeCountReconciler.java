@@ -0,0 +1,42 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.studyproject.metagram.repos.MessageRepo;
+
+@Slf4j
+@Service
+public class LikeCountReconciler {
+    private final MessageRepo messageRepo;
+    @Value("${like-count.reconcile.chunk-size:10000}")
+    private long chunkSize;
+
+    @Autowired
+    public LikeCountReconciler(MessageRepo messageRepo) {
+        this.messageRepo = messageRepo;
+    }
+
+    /**
+     * public int reconcile()
+     * repairs drift between message.like_count and message_likes. Works in id ranges of chunk-size messages,
+     * every range is a separate short transaction, so rows are never locked for long.
+     * Returns count of repaired messages.
+     */
+    @Scheduled(cron = "${like-count.reconcile.cron:0 30 4 * * *}")
+    public int reconcile() {
+        long maxId = messageRepo.findMaxId();
+        int repaired = 0;
+        for (long fromId = 0; fromId < maxId; fromId += chunkSize) {
+            long toId = fromId + chunkSize;
+            repaired += messageRepo.reconcileLikeCounts(fromId, toId);
+            repaired += messageRepo.resetOrphanLikeCounts(fromId, toId);
+        }
+        if (repaired > 0) {
+            log.warn("Like counters repaired for {} messages", repaired);
+        }
+        return repaired;
+    }
+}
@@ -0,0 +1,143 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.studyproject.metagram.domain.OutboundMail;
+import org.studyproject.metagram.repos.OutboundMailRepo;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains outbound_mail queue with mail.queue.workers threads.
+ * Every worker claims a batch of due emails with a lease in a short transaction, sends it over one SMTP connection
+ * outside of any transaction, then deletes sent emails and reschedules failed ones with exponential backoff
+ * in a second short transaction. Emails of a worker which dies while sending are retried after mail.queue.lease-ms.
+ */
+@Slf4j
+@Service
+public class MailQueueWorker {
+    private static final long MAX_BACKOFF_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final OutboundMailRepo outboundMailRepo;
+    private final SMTPMailSender smtpMailSender;
+    private final TransactionTemplate transactionTemplate;
+    @Value("${mail.queue.workers:2}")
+    private int workers;
+    @Value("${mail.queue.batch-size:50}")
+    private int batchSize;
+    @Value("${mail.queue.poll-interval-ms:1000}")
+    private long pollInterval;
+    @Value("${mail.queue.max-attempts:8}")
+    private int maxAttempts;
+    @Value("${mail.queue.backoff-ms:5000}")
+    private long backoff;
+    @Value("${mail.queue.lease-ms:600000}")
+    private long lease;
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public MailQueueWorker(OutboundMailRepo outboundMailRepo,
+                           SMTPMailSender smtpMailSender,
+                           TransactionTemplate transactionTemplate) {
+        this.outboundMailRepo = outboundMailRepo;
+        this.smtpMailSender = smtpMailSender;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (workers <= 0) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-queue-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.scheduleWithFixedDelay(this::drain, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * public void drain()
+     * sends due emails batch by batch until queue has no due emails
+     */
+    public void drain() {
+        try {
+            int processed;
+            do {
+                processed = sendBatch();
+            } while (processed == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Mail queue worker failed", e);
+        }
+    }
+
+    private int sendBatch() {
+        Instant now = Instant.now();
+        List<OutboundMail> batch = transactionTemplate.execute(status ->
+                outboundMailRepo.claimDueBatch(now, now.plusMillis(lease), batchSize));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        Map<OutboundMail, Exception> failed = smtpMailSender.deliver(batch);
+        List<Long> sent = new ArrayList<>();
+        for (OutboundMail mail : batch) {
+            if (!failed.containsKey(mail)) {
+                sent.add(mail.getId());
+            }
+        }
+        transactionTemplate.execute(status -> {
+            if (!sent.isEmpty()) {
+                outboundMailRepo.deleteByIds(sent);
+            }
+            for (OutboundMail mail : batch) {
+                Exception error = failed.get(mail);
+                if (error != null) {
+                    reschedule(mail, error);
+                }
+            }
+            return null;
+        });
+        return batch.size();
+    }
+
+    private void reschedule(OutboundMail mail, Exception error) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setLastError(truncate(String.valueOf(error.getMessage())));
+        if (attempts >= maxAttempts) {
+            mail.setFailed(true);
+            log.error("Email {} to {} failed after {} attempts", mail.getId(), mail.getRecipient(), attempts, error);
+        } else {
+            long delay = Math.min(MAX_BACKOFF_MS, backoff << Math.min(attempts - 1, 20));
+            mail.setNextAttemptAt(Instant.now().plusMillis(delay));
+        }
+        outboundMailRepo.save(mail);
+    }
+
+    private static String truncate(String message) {
+        return message.length() > 1024 ? message.substring(0, 1024) : message;
+    }
+}
@@ -1,116 +1,348 @@
-package org.studyproject.metagram.service;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.web.PageableDefault;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.stereotype.Service;
-import org.springframework.ui.Model;
-import org.springframework.validation.BindingResult;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.multipart.MultipartFile;
-import org.studyproject.metagram.controller.ControllerUtils;
-import org.studyproject.metagram.domain.Message;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.domain.dto.MessageDto;
-import org.studyproject.metagram.repos.MessageRepo;
-
-import javax.validation.Valid;
-import java.io.File;
-import java.io.IOException;
-import java.util.Map;
-import java.util.UUID;
-
-@Service
-public class MessageService {
-    private final MessageRepo messageRepo;
-    @Value("${upload.path}")
-    private String uploadPath;
-
-    @Autowired
-    public MessageService(MessageRepo messageRepo) {
-        this.messageRepo = messageRepo;
-    }
-
-    /**
-     * addMessage(@RequestParam("file") MultipartFile file,
-     *
-     * @AuthenticationPrincipal User user,
-     * Model model,
-     * @Valid Message message,
-     * BindingResult bindingResult,
-     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
-     * adding message to database
-     */
-    public void addMessage(@RequestParam("file") MultipartFile file,
-                           @AuthenticationPrincipal User user,
-                           Model model,
-                           @Valid Message message,
-                           BindingResult bindingResult,
-                           @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable) throws IOException {
-        message.setAuthor(user);
-        if (file.isEmpty() || bindingResult.hasErrors()) {
-            if (file.isEmpty()) {
-                model.addAttribute("filenameError", "Please, add photo.");
-            }
-            if (bindingResult.hasErrors()) {
-                Map<String, String> errorsMap = ControllerUtils.getErrors(bindingResult);
-                model.mergeAttributes(errorsMap);
-            }
-        } else {
-            saveFile(file, message);
-            messageRepo.save(message);
-        }
-
-        Page<MessageDto> page = messageRepo.findAll(pageable, user);
-        model.addAttribute("pageCount", page.getTotalPages());
-        model.addAttribute("pageNumber", page.getNumber());
-        model.addAttribute("page", page);
-    }
-
-    /**
-     * public void saveFile(@RequestParam("file") MultipartFile file,
-     *
-     * @Valid Message message)
-     * saving file to filesystem
-     */
-    public void saveFile(@RequestParam("file") MultipartFile file, @Valid Message message) throws IOException {
-        if (file != null && !file.getOriginalFilename().isEmpty()) {
-            File uploadDir = new File(uploadPath);
-
-            if (!uploadDir.exists()) {
-                uploadDir.mkdir();
-            }
-
-            String uuidFile = UUID.randomUUID().toString();
-            String resultFilename = uuidFile + "." + file.getOriginalFilename();
-
-            file.transferTo(new File(uploadPath + "/" + resultFilename));
-
-            message.setFilename(resultFilename);
-        }
-    }
-
-    /**
-     * public Page<MessageDto> messageList(String filter, Pageable pageable, User user)
-     * List of all messages in page view
-     */
-    public Page<MessageDto> messageList(String filter, Pageable pageable, User user) {
-        if (filter != null && !filter.isEmpty()) {
-            return messageRepo.findByTag(filter, pageable, user);
-        } else {
-            return messageRepo.findAll(pageable, user);
-        }
-    }
-
-    /**
-     * public Page<MessageDto> messageListForUser(Pageable pageable, User currentUser, User author)
-     * List of one user messages in page view
-     */
-    public Page<MessageDto> messageListForUser(Pageable pageable, User currentUser, User author) {
-        return messageRepo.findAllByAuthor(currentUser, pageable, author);
-    }
-}
+package org.studyproject.metagram.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.ui.Model;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.studyproject.metagram.controller.ControllerUtils;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.dto.FeedPage;
+import org.studyproject.metagram.domain.dto.LikeDto;
+import org.studyproject.metagram.domain.dto.MessageDto;
+import org.studyproject.metagram.domain.dto.SearchPage;
+import org.studyproject.metagram.domain.util.TagHelper;
+import org.studyproject.metagram.exeption.ResourceNotFoundException;
+import org.studyproject.metagram.repos.MessageRepo;
+
+import javax.validation.Valid;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.studyproject.metagram.config.Literals.MESSAGE_NOT_FOUND;
+
+@Service
+public class MessageService {
+    private final MessageRepo messageRepo;
+    private final TimelineService timelineService;
+    private final HotTagCache hotTagCache;
+    private final UploadStorage uploadStorage;
+    private final ThumbnailService thumbnailService;
+    private final FeedPublisher feedPublisher;
+    private final FeedVersion feedVersion;
+    private final EntityCache entityCache;
+    @Value("${search.max-candidates:1000}")
+    private int searchCandidates;
+
+    @Autowired
+    public MessageService(MessageRepo messageRepo, TimelineService timelineService, HotTagCache hotTagCache,
+                          UploadStorage uploadStorage, ThumbnailService thumbnailService, FeedPublisher feedPublisher,
+                          FeedVersion feedVersion, EntityCache entityCache) {
+        this.messageRepo = messageRepo;
+        this.timelineService = timelineService;
+        this.hotTagCache = hotTagCache;
+        this.uploadStorage = uploadStorage;
+        this.thumbnailService = thumbnailService;
+        this.feedPublisher = feedPublisher;
+        this.feedVersion = feedVersion;
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * addMessage(@RequestParam("file") MultipartFile file,
+     *
+     * @AuthenticationPrincipal User user,
+     * Model model,
+     * @Valid Message message,
+     * BindingResult bindingResult,
+     * @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable)
+     * adding message to database
+     */
+    public void addMessage(@RequestParam("file") MultipartFile file,
+                           @AuthenticationPrincipal User user,
+                           Model model,
+                           @Valid Message message,
+                           BindingResult bindingResult,
+                           @PageableDefault(sort = {"id"}, direction = Sort.Direction.DESC) Pageable pageable) throws IOException {
+        message.setAuthor(user);
+        if (file.isEmpty() || bindingResult.hasErrors()) {
+            if (file.isEmpty()) {
+                model.addAttribute("filenameError", "Please, add photo.");
+            }
+            if (bindingResult.hasErrors()) {
+                Map<String, String> errorsMap = ControllerUtils.getErrors(bindingResult);
+                model.mergeAttributes(errorsMap);
+            }
+        } else {
+            saveFile(file, message);
+            message.setTags(TagHelper.parseTags(message.getTag(), message.getText()));
+            messageRepo.save(message);
+            hotTagCache.invalidate(message.getTags());
+            timelineService.onMessageSaved(message);
+            feedVersion.messageChanged(message);
+            feedPublisher.messageCreated(message);
+        }
+
+        FeedPage page = messageList(null, null, null, pageable.getPageSize(), user);
+        model.addAttribute("keyset", true);
+        model.addAttribute("feedUrl", "/main");
+        model.addAttribute("liveTopic", FeedPublisher.FEED_TOPIC);
+        model.addAttribute("page", page);
+    }
+
+    /**
+     * public String saveFile(@RequestParam("file") MultipartFile file,
+     *
+     * @Valid Message message)
+     * saving file to content-addressed upload storage and queueing its thumbnails,
+     * returns replaced file of edited message, it is released by caller after the message is saved
+     */
+    public String saveFile(@RequestParam("file") MultipartFile file, @Valid Message message) throws IOException {
+        if (file != null && !file.getOriginalFilename().isEmpty()) {
+            String previous = message.getFilename();
+            message.setFilename(uploadStorage.store(file));
+            thumbnailService.generateAsync(message.getFilename());
+            return previous;
+        }
+        return null;
+    }
+
+    /**
+     * public void deleteMessage(Message message)
+     * delete message and release its file
+     */
+    public void deleteMessage(Message message) throws IOException {
+        messageRepo.delete(message);
+        timelineService.onMessageDeleted(message);
+        releaseFile(message.getFilename());
+        hotTagCache.invalidate(message.getTags());
+        feedVersion.messageChanged(message);
+    }
+
+    private void releaseFile(String filename) throws IOException {
+        if (uploadStorage.release(filename)) {
+            thumbnailService.delete(filename);
+        }
+    }
+
+    /**
+     * public void updateMessage(Message message, MultipartFile file)
+     * saving edited message with re-parsed tags and new file. Replaced file is released only after
+     * the message is saved, failed save leaves the old file referenced and the new one to orphan collection
+     */
+    public void updateMessage(Message message, MultipartFile file) throws IOException {
+        String replaced = saveFile(file, message);
+        Set<String> oldTags = new HashSet<>(message.getTags());
+        message.setTags(TagHelper.parseTags(message.getTag(), message.getText()));
+        messageRepo.save(message);
+        releaseFile(replaced);
+        feedVersion.messageChanged(message, oldTags);
+        oldTags.addAll(message.getTags());
+        hotTagCache.invalidate(oldTags);
+    }
+
+    /**
+     * public LikeDto like(User currentUser, Long messageId)
+     * like/unlike message with single statement over message_likes, likes collection is not loaded.
+     * Concurrent toggles are serialized by the row lock of message_likes primary key. Statement is not seen
+     * by Hibernate, so cached message with old like_count is evicted explicitly. Feed versions move in the same transaction
+     */
+    @Transactional
+    public LikeDto like(User currentUser, Long messageId) {
+        List<Object[]> rows = messageRepo.toggleLike(messageId, currentUser.getId());
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException(MESSAGE_NOT_FOUND);
+        }
+        entityCache.evictMessage(messageId);
+        Object[] row = rows.get(0);
+        LikeDto like = new LikeDto(messageId, row[2] == null ? null : ((Number) row[2]).longValue(),
+                ((Number) row[0]).longValue(), (Boolean) row[1]);
+        feedVersion.likesChanged(like.getAuthorId(), TagHelper.splitTags((String) row[3]), currentUser.getId());
+        feedPublisher.likesChanged(like);
+        return like;
+    }
+
+    /**
+     * public Page<MessageDto> messageList(String filter, Pageable pageable, User user)
+     * List of all messages in page view
+     */
+    public Page<MessageDto> messageList(String filter, Pageable pageable, User user) {
+        Page<MessageDto> page;
+        if (filter != null && !filter.isEmpty()) {
+            page = messageRepo.findByTag(TagHelper.normalize(filter), pageable);
+        } else {
+            page = messageRepo.findAll(pageable);
+        }
+        resolveLikes(page.getContent(), user);
+        return page;
+    }
+
+    /**
+     * public Page<MessageDto> messageListForUser(Pageable pageable, User currentUser, User author)
+     * List of one user messages in page view
+     */
+    public Page<MessageDto> messageListForUser(Pageable pageable, User currentUser, User author) {
+        Page<MessageDto> page = messageRepo.findAllByAuthor(pageable, author);
+        resolveLikes(page.getContent(), currentUser);
+        return page;
+    }
+
+    /**
+     * public FeedPage messageList(String filter, Long before, Long after, int size, User user)
+     * List of all messages in keyset view: messages older than before or newer than after, without count query
+     */
+    public FeedPage messageList(String filter, Long before, Long after, int size, User user) {
+        Pageable pageable = keysetPageable(after, size);
+        List<MessageDto> rows;
+        if (filter != null && !filter.isEmpty()) {
+            String tag = TagHelper.normalize(filter);
+            if (before == null && after == null) {
+                rows = hotTagCache.firstPage(tag, size,
+                        key -> messageRepo.findByTagKeyset(key, lowerBound(null), upperBound(null), pageable));
+            } else {
+                rows = messageRepo.findByTagKeyset(tag, lowerBound(after), upperBound(before), pageable);
+            }
+        } else {
+            rows = messageRepo.findAllKeyset(lowerBound(after), upperBound(before), pageable);
+        }
+        FeedPage page = FeedPage.of(rows, size, before, after);
+        resolveLikes(page.getContent(), user);
+        return page;
+    }
+
+    /**
+     * public FeedPage messageListForUser(Long before, Long after, int size, User currentUser, User author)
+     * List of one user messages in keyset view
+     */
+    public FeedPage messageListForUser(Long before, Long after, int size, User currentUser, User author) {
+        List<MessageDto> rows = messageRepo.findAllByAuthorKeyset(
+                lowerBound(after), upperBound(before), keysetPageable(after, size), author);
+        FeedPage page = FeedPage.of(rows, size, before, after);
+        resolveLikes(page.getContent(), currentUser);
+        return page;
+    }
+
+    /**
+     * public FeedPage likedList(Long before, Long after, int size, User user)
+     * messages liked by user in keyset view, ordered by message id
+     */
+    public FeedPage likedList(Long before, Long after, int size, User user) {
+        List<MessageDto> rows = messageRepo.findLikedKeyset(
+                lowerBound(after), upperBound(before), keysetPageable(after, size), user);
+        FeedPage page = FeedPage.of(rows, size, before, after);
+        page.getContent().forEach(message -> message.setMeLiked(true));
+        return page;
+    }
+
+    /**
+     * private void resolveLikes(List<MessageDto> messages, User user)
+     * sets meLiked for one page of messages with single IN query over message_likes
+     */
+    private void resolveLikes(List<MessageDto> messages, User user) {
+        if (messages.isEmpty() || user == null) {
+            return;
+        }
+        List<Long> ids = messages.stream()
+                .map(MessageDto::getId)
+                .collect(Collectors.toList());
+        Set<Long> liked = messageRepo.findLikedIds(user, ids);
+        for (MessageDto message : messages) {
+            message.setMeLiked(liked.contains(message.getId()));
+        }
+    }
+
+    /**
+     * public FeedPage timeline(Long before, Long after, int size, User user)
+     * messages from channels which user is subscribed to, in keyset view
+     */
+    public FeedPage timeline(Long before, Long after, int size, User user) {
+        List<Long> ids = timelineService.timelineIds(user.getId(), before, after, size + 1);
+        List<MessageDto> rows = Collections.emptyList();
+        if (!ids.isEmpty()) {
+            Sort.Direction direction = after != null ? Sort.Direction.ASC : Sort.Direction.DESC;
+            rows = messageRepo.findAllByIds(ids, Sort.by(direction, "id"));
+        }
+        FeedPage page = FeedPage.of(rows, size, before, after);
+        resolveLikes(page.getContent(), user);
+        return page;
+    }
+
+    /**
+     * public SearchPage search(String query, String cursor, int size, User user)
+     * full-text search over message text, results ordered by relevance and paged by "rank:id" cursor.
+     * Relevance is computed for search.max-candidates newest matches only
+     */
+    public SearchPage search(String query, String cursor, int size, User user) {
+        float rank = Float.MAX_VALUE;
+        long before = Long.MAX_VALUE;
+        if (cursor != null && cursor.indexOf(':') > 0) {
+            try {
+                rank = Float.parseFloat(cursor.substring(0, cursor.indexOf(':')));
+                before = Long.parseLong(cursor.substring(cursor.indexOf(':') + 1));
+            } catch (NumberFormatException e) {
+                rank = Float.MAX_VALUE;
+                before = Long.MAX_VALUE;
+            }
+        }
+
+        List<Object[]> hits = messageRepo.search(query, rank, before, searchCandidates, size + 1);
+        boolean hasNext = hits.size() > size;
+        if (hasNext) {
+            hits = hits.subList(0, size);
+        }
+        List<Long> ids = hits.stream()
+                .map(hit -> ((Number) hit[0]).longValue())
+                .collect(Collectors.toList());
+        List<MessageDto> content = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            Map<Long, MessageDto> byId = messageRepo.findAllByIds(ids, Sort.unsorted()).stream()
+                    .collect(Collectors.toMap(MessageDto::getId, Function.identity()));
+            for (Long id : ids) {
+                if (byId.containsKey(id)) {
+                    content.add(byId.get(id));
+                }
+            }
+        }
+        resolveLikes(content, user);
+
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] last = hits.get(hits.size() - 1);
+            nextCursor = ((Number) last[1]).floatValue() + ":" + ((Number) last[0]).longValue();
+        }
+        return new SearchPage(content, nextCursor);
+    }
+
+    /**
+     * one extra row is fetched to know whether the next page exists
+     */
+    private Pageable keysetPageable(Long after, int size) {
+        Sort.Direction direction = after != null ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return PageRequest.of(0, size + 1, Sort.by(direction, "id"));
+    }
+
+    private Long lowerBound(Long after) {
+        return after != null ? after : 0L;
+    }
+
+    private Long upperBound(Long before) {
+        return before != null ? before : Long.MAX_VALUE;
+    }
+}
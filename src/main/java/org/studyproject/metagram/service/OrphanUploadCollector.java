@@ -0,0 +1,181 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.studyproject.metagram.repos.MessageRepo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes uploaded files which no message references.
+ * Upload directory is walked lazily and names are checked against message.filename in batches of
+ * upload-gc.batch-size, so memory does not depend on count of files or messages. Only files older than
+ * upload-gc.grace-hours are removed, which protects uploads whose message is not committed yet.
+ * Deletes are limited to upload-gc.max-deletes-per-second. Derivatives of missing originals and
+ * abandoned temporary files are removed as well.
+ */
+@Slf4j
+@Service
+public class OrphanUploadCollector {
+    private final UploadStorage uploadStorage;
+    private final MessageRepo messageRepo;
+    @Value("${upload.path}")
+    private String uploadPath;
+    @Value("${upload-gc.batch-size:500}")
+    private int batchSize;
+    @Value("${upload-gc.grace-hours:24}")
+    private long graceHours;
+    @Value("${upload-gc.max-deletes-per-second:50}")
+    private int maxDeletesPerSecond;
+
+    @Autowired
+    public OrphanUploadCollector(UploadStorage uploadStorage, MessageRepo messageRepo) {
+        this.uploadStorage = uploadStorage;
+        this.messageRepo = messageRepo;
+    }
+
+    /**
+     * public long collect()
+     * one collection pass, returns reclaimed bytes
+     */
+    @Scheduled(cron = "${upload-gc.cron:0 0 5 * * *}")
+    public long collect() {
+        Path root = Paths.get(uploadPath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(graceHours);
+        Stats stats = new Stats();
+        try {
+            collectOriginals(root, cutoff, stats);
+            collectDerivatives(root, stats);
+            collectTemporary(root.resolve(UploadStorage.TMP_DIR), cutoff, stats);
+        } catch (IOException e) {
+            log.error("Orphaned upload collection failed", e);
+        }
+        log.info("Orphaned upload collection: scanned {} files, removed {}, reclaimed {} bytes",
+                stats.scanned, stats.removed, stats.reclaimed);
+        return stats.reclaimed;
+    }
+
+    private void collectOriginals(Path root, long cutoff, Stats stats) throws IOException {
+        List<String> batch = new ArrayList<>(batchSize);
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.equals(root) || !dir.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                stats.scanned++;
+                if (attrs.isRegularFile() && attrs.lastModifiedTime().toMillis() < cutoff) {
+                    batch.add(root.relativize(file).toString().replace(File.separatorChar, '/'));
+                }
+                if (batch.size() >= batchSize) {
+                    removeUnreferenced(batch, cutoff, stats);
+                }
+                return next();
+            }
+        });
+        removeUnreferenced(batch, cutoff, stats);
+    }
+
+    private void removeUnreferenced(List<String> batch, long cutoff, Stats stats) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<String> referenced = messageRepo.findReferencedFilenames(batch);
+        for (String name : batch) {
+            if (referenced.contains(name)) {
+                continue;
+            }
+            long size = uploadStorage.deleteOrphan(name, cutoff,
+                    candidate -> !messageRepo.findReferencedFilenames(Collections.singletonList(candidate)).isEmpty());
+            if (size >= 0) {
+                stats.removed(size);
+                pace();
+            }
+        }
+        batch.clear();
+    }
+
+    private void collectDerivatives(Path root, Stats stats) throws IOException {
+        Path derivatives = root.resolve(ThumbnailService.DERIVATIVES_DIR);
+        if (!Files.isDirectory(derivatives)) {
+            return;
+        }
+        try (DirectoryStream<Path> kinds = Files.newDirectoryStream(derivatives)) {
+            for (Path kind : kinds) {
+                Files.walkFileTree(kind, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        stats.scanned++;
+                        String name = kind.relativize(file).toString().replace(File.separatorChar, '/');
+                        if (!Files.exists(root.resolve(name)) && Files.deleteIfExists(file)) {
+                            stats.removed(attrs.size());
+                            pace();
+                        }
+                        return next();
+                    }
+                });
+            }
+        }
+    }
+
+    private void collectTemporary(Path tmpDir, long cutoff, Stats stats) throws IOException {
+        if (!Files.isDirectory(tmpDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tmpDir)) {
+            for (Path file : files) {
+                stats.scanned++;
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attrs.isRegularFile() && attrs.lastModifiedTime().toMillis() < cutoff && Files.deleteIfExists(file)) {
+                    stats.removed(attrs.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * sleeps between deletes to keep the rate limit, interruption stops the walk
+     */
+    private void pace() {
+        if (maxDeletesPerSecond <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(1000L / maxDeletesPerSecond);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FileVisitResult next() {
+        return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+    }
+
+    private static class Stats {
+        private long scanned;
+        private long removed;
+        private long reclaimed;
+
+        private void removed(long size) {
+            removed++;
+            reclaimed += size;
+        }
+    }
+}
@@ -1,34 +1,83 @@
-package org.studyproject.metagram.service;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.stereotype.Service;
-
-@Service
-public class SMTPMailSender {
-    private final JavaMailSender mailSender;
-    @Value("${spring.mail.username}")
-    private String username;
-
-    @Autowired
-    public SMTPMailSender(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
-    }
-
-    /**
-     * public void send(String emailTo, String subject, String message)
-     * sending email
-     */
-    public void send(String emailTo, String subject, String message) {
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-
-        mailMessage.setFrom(username);
-        mailMessage.setTo(emailTo);
-        mailMessage.setSubject(subject);
-        mailMessage.setText(message);
-
-        mailSender.send(mailMessage);
-    }
-}
+package org.studyproject.metagram.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+import org.studyproject.metagram.domain.OutboundMail;
+import org.studyproject.metagram.repos.OutboundMailRepo;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class SMTPMailSender {
+    private final JavaMailSender mailSender;
+    private final OutboundMailRepo outboundMailRepo;
+    @Value("${spring.mail.username}")
+    private String username;
+
+    @Autowired
+    public SMTPMailSender(JavaMailSender mailSender, OutboundMailRepo outboundMailRepo) {
+        this.mailSender = mailSender;
+        this.outboundMailRepo = outboundMailRepo;
+    }
+
+    /**
+     * public void send(String emailTo, String subject, String message)
+     * queueing email, it is sent by MailQueueWorker so request does not wait for mail server
+     */
+    public void send(String emailTo, String subject, String message) {
+        outboundMailRepo.save(new OutboundMail(emailTo, subject, message));
+    }
+
+    /**
+     * public Map<OutboundMail, Exception> deliver(List<OutboundMail> mails)
+     * sending batch of emails over one SMTP connection, returns emails which were not sent with their errors
+     */
+    public Map<OutboundMail, Exception> deliver(List<OutboundMail> mails) {
+        Map<OutboundMail, Exception> failed = new HashMap<>();
+        Map<Object, OutboundMail> byMessage = new IdentityHashMap<>();
+        List<MimeMessage> mimeMessages = new ArrayList<>();
+        for (OutboundMail mail : mails) {
+            try {
+                MimeMessage mimeMessage = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, StandardCharsets.UTF_8.name());
+
+                helper.setFrom(username);
+                helper.setTo(mail.getRecipient());
+                helper.setSubject(mail.getSubject());
+                helper.setText(mail.getBody());
+
+                mimeMessages.add(mimeMessage);
+                byMessage.put(mimeMessage, mail);
+            } catch (MessagingException e) {
+                failed.put(mail, e);
+            }
+        }
+        if (mimeMessages.isEmpty()) {
+            return failed;
+        }
+
+        try {
+            mailSender.send(mimeMessages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                byMessage.values().forEach(mail -> failed.put(mail, e));
+            }
+            e.getFailedMessages().forEach((message, error) -> failed.put(byMessage.get(message), error));
+        } catch (MailException e) {
+            byMessage.values().forEach(mail -> failed.put(mail, e));
+        }
+        return failed;
+    }
+}
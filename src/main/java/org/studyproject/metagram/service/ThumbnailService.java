@@ -0,0 +1,184 @@
+package org.studyproject.metagram.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Card-size and retina-size derivatives of uploaded images.
+ * Derivatives are generated in background after upload on a bounded executor, missing ones are generated
+ * on first request. They are stored as upload.path/.derivatives/<derivative>/<filename>, jpg and bmp originals
+ * keep their format and everything else is written as PNG under the original name, see mediaType.
+ */
+@Slf4j
+@Service
+public class ThumbnailService {
+    static final String DERIVATIVES_DIR = ".derivatives";
+    private static final MediaType IMAGE_BMP = MediaType.valueOf("image/bmp");
+
+    private final UploadStorage uploadStorage;
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public ThumbnailService(UploadStorage uploadStorage,
+                            @Value("${thumbnail.threads:2}") int threads,
+                            @Value("${thumbnail.queue-capacity:100}") int queueCapacity) {
+        this.uploadStorage = uploadStorage;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public enum Derivative {
+        CARD(152, 203), RETINA(304, 406);
+
+        private final int width;
+        private final int height;
+
+        Derivative(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public String path() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * public void generateAsync(String filename)
+     * queues generation of all derivatives. When queue is full task is dropped, derivative will be
+     * generated on first request
+     */
+    public void generateAsync(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            for (Derivative derivative : Derivative.values()) {
+                try {
+                    derivative(filename, derivative);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Cannot generate {} derivative of {}", derivative.path(), filename, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * public Path derivative(String filename, Derivative derivative)
+     * returns path of derivative, generates it if it is missing. Returns null when original
+     * is missing or is not an image
+     */
+    public Path derivative(String filename, Derivative derivative) throws IOException {
+        Path target = derivativePath(filename, derivative);
+        if (Files.exists(target)) {
+            return target;
+        }
+        Path original = uploadStorage.resolve(filename);
+        if (!Files.exists(original)) {
+            return null;
+        }
+        BufferedImage image = ImageIO.read(original.toFile());
+        if (image == null) {
+            return null;
+        }
+
+        String format = format(filename);
+        BufferedImage scaled = scale(image, derivative, "png".equals(format));
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "derivative", ".part");
+        try {
+            ImageIO.write(scaled, format, tmp.toFile());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return target;
+    }
+
+    /**
+     * public void delete(String filename)
+     * deletes all derivatives of removed file
+     */
+    public void delete(String filename) throws IOException {
+        for (Derivative derivative : Derivative.values()) {
+            Files.deleteIfExists(derivativePath(filename, derivative));
+        }
+    }
+
+    /**
+     * public static MediaType mediaType(String filename)
+     * content type of derivatives of filename, which is not always the type of its extension
+     */
+    public static MediaType mediaType(String filename) {
+        switch (format(filename)) {
+            case "jpg":
+            case "jpeg":
+                return MediaType.IMAGE_JPEG;
+            case "bmp":
+                return IMAGE_BMP;
+            default:
+                return MediaType.IMAGE_PNG;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Path derivativePath(String filename, Derivative derivative) {
+        return uploadStorage.resolve(DERIVATIVES_DIR + "/" + derivative.path() + "/" + filename);
+    }
+
+    /**
+     * scales image to cover derivative size and crops the center, like the card shows it
+     */
+    private static BufferedImage scale(BufferedImage image, Derivative derivative, boolean alpha) {
+        double ratio = Math.max((double) derivative.width / image.getWidth(),
+                (double) derivative.height / image.getHeight());
+        int width = (int) Math.ceil(image.getWidth() * ratio);
+        int height = (int) Math.ceil(image.getHeight() * ratio);
+
+        BufferedImage result = new BufferedImage(derivative.width, derivative.height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image,
+                    (derivative.width - width) / 2, (derivative.height - height) / 2, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private static String format(String filename) {
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return "jpg".equals(extension) || "jpeg".equals(extension) || "bmp".equals(extension) ? extension : "png";
+    }
+}
@@ -0,0 +1,190 @@
+package org.studyproject.metagram.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.studyproject.metagram.domain.Message;
+import org.studyproject.metagram.repos.MessageRepo;
+import org.studyproject.metagram.repos.UserRepo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Home timeline: ids of messages from channels the user is subscribed to.
+ * New messages are pushed to bounded per-subscriber timelines when saved (fan-out-on-write).
+ * Channels with more than timeline.fanout-limit subscribers are not pushed, their messages are merged
+ * into the timeline when it is read (fan-out-on-read).
+ */
+@Service
+public class TimelineService {
+    private final MessageRepo messageRepo;
+    private final UserRepo userRepo;
+    private final int capacity;
+    private final int fanoutLimit;
+    private final Cache<Long, Timeline> timelines;
+    private final Set<Long> celebrities = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public TimelineService(MessageRepo messageRepo,
+                           UserRepo userRepo,
+                           @Value("${timeline.capacity:500}") int capacity,
+                           @Value("${timeline.fanout-limit:10000}") int fanoutLimit,
+                           @Value("${timeline.max-timelines:20000}") long maxTimelines) {
+        this.messageRepo = messageRepo;
+        this.userRepo = userRepo;
+        this.capacity = capacity;
+        this.fanoutLimit = fanoutLimit;
+        this.timelines = Caffeine.newBuilder()
+                .maximumSize(maxTimelines)
+                .build();
+    }
+
+    /**
+     * public void onMessageSaved(Message message)
+     * pushes new message id to timelines of author subscribers which are in memory now,
+     * other timelines will be built from database on first read
+     */
+    public void onMessageSaved(Message message) {
+        Long authorId = message.getAuthor().getId();
+        List<Long> subscribers = userRepo.findSubscriberIds(authorId, PageRequest.of(0, fanoutLimit + 1));
+        if (subscribers.size() > fanoutLimit) {
+            celebrities.add(authorId);
+            return;
+        }
+        for (Long subscriberId : subscribers) {
+            Timeline timeline = timelines.getIfPresent(subscriberId);
+            if (timeline != null) {
+                timeline.push(message.getId());
+            }
+        }
+    }
+
+    /**
+     * public void onMessageDeleted(Message message)
+     * removes deleted message id from timelines in memory which contain its author,
+     * so pages do not come short and hasMore stays correct
+     */
+    public void onMessageDeleted(Message message) {
+        Long authorId = message.getAuthor().getId();
+        for (Timeline timeline : timelines.asMap().values()) {
+            if (timeline.getChannels().contains(authorId)) {
+                timeline.remove(message.getId());
+            }
+        }
+    }
+
+    /**
+     * public void onChannelDeleted(Long authorId)
+     * drops timelines which contain messages of deleted account, they are built again without them on next read
+     */
+    public void onChannelDeleted(Long authorId) {
+        timelines.asMap().values().removeIf(timeline -> timeline.getChannels().contains(authorId));
+        timelines.invalidate(authorId);
+        celebrities.remove(authorId);
+    }
+
+    /**
+     * public void invalidate(Long userId)
+     * drops timeline of user, uses when user subscriptions are changed
+     */
+    public void invalidate(Long userId) {
+        timelines.invalidate(userId);
+    }
+
+    /**
+     * public List<Long> timelineIds(Long userId, Long before, Long after, int limit)
+     * returns up to limit message ids older than before (id DESC) or newer than after (id ASC)
+     */
+    public List<Long> timelineIds(Long userId, Long before, Long after, int limit) {
+        Timeline timeline = timelines.get(userId, this::build);
+        long lower = after != null ? after : 0L;
+        long upper = before != null ? before : Long.MAX_VALUE;
+        boolean ascending = after != null;
+
+        List<Long> ids = ascending ? timeline.idsAfter(lower, limit) : timeline.idsBefore(upper, limit);
+        if (!ascending && ids.size() < limit && timeline.isTruncated()) {
+            return findIds(timeline.getChannels(), lower, upper, limit, false);
+        }
+
+        Set<Long> pulled = timeline.getChannels().stream()
+                .filter(celebrities::contains)
+                .collect(Collectors.toSet());
+        if (pulled.isEmpty()) {
+            return ids;
+        }
+        TreeSet<Long> merged = new TreeSet<>(ascending ? Comparator.naturalOrder() : Comparator.reverseOrder());
+        merged.addAll(ids);
+        merged.addAll(findIds(pulled, lower, upper, limit, ascending));
+        return merged.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    private Timeline build(Long userId) {
+        Set<Long> channels = new HashSet<>(userRepo.findSubscriptionIds(userId));
+        List<Long> ids = findIds(channels, 0L, Long.MAX_VALUE, capacity, false);
+        return new Timeline(channels, ids, capacity, ids.size() >= capacity);
+    }
+
+    private List<Long> findIds(Set<Long> authorIds, long lower, long upper, int limit, boolean ascending) {
+        if (authorIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Pageable pageable = PageRequest.of(0, limit, Sort.by(direction, "id"));
+        return messageRepo.findIdsByAuthorIds(authorIds, lower, upper, pageable);
+    }
+
+    /**
+     * bounded set of message ids sorted by id DESC
+     */
+    private static class Timeline {
+        private final Set<Long> channels;
+        private final TreeSet<Long> ids = new TreeSet<>(Comparator.reverseOrder());
+        private final int capacity;
+        private boolean truncated;
+
+        Timeline(Set<Long> channels, List<Long> ids, int capacity, boolean truncated) {
+            this.channels = channels;
+            this.ids.addAll(ids);
+            this.capacity = capacity;
+            this.truncated = truncated;
+        }
+
+        synchronized void push(Long id) {
+            ids.add(id);
+            while (ids.size() > capacity) {
+                ids.pollLast();
+                truncated = true;
+            }
+        }
+
+        synchronized void remove(Long id) {
+            ids.remove(id);
+        }
+
+        synchronized List<Long> idsBefore(long before, int limit) {
+            return ids.tailSet(before, false).stream()
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        synchronized List<Long> idsAfter(long after, int limit) {
+            List<Long> newer = new ArrayList<>(ids.headSet(after, false).descendingSet());
+            return newer.subList(0, Math.min(limit, newer.size()));
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+
+        Set<Long> getChannels() {
+            return channels;
+        }
+    }
+}
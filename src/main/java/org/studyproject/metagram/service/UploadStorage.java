@@ -0,0 +1,171 @@
+package org.studyproject.metagram.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.studyproject.metagram.repos.StoredFileRepo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Content-addressed storage of uploaded files.
+ * File is stored once per content as upload.path/ab/cd/<sha-256>.<ext>, stored_file.ref_count counts messages
+ * which reference it, so re-posting the same image costs no bytes and file is removed with its last reference.
+ * Re-posting touches modification time of the file, so orphan collection grace period starts again.
+ */
+@Service
+public class UploadStorage {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    static final String TMP_DIR = ".tmp";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StoredFileRepo storedFileRepo;
+    private final Object[] locks = new Object[64];
+    @Value("${upload.path}")
+    private String uploadPath;
+
+    @Autowired
+    public UploadStorage(StoredFileRepo storedFileRepo) {
+        this.storedFileRepo = storedFileRepo;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * public String store(MultipartFile file)
+     * streams file to temporary file computing its hash, then moves it to hash-prefix directory
+     * or drops it if the same content is stored already. Returns stored name for Message.filename
+     */
+    public String store(MultipartFile file) throws IOException {
+        Path tmpDir = Paths.get(uploadPath, TMP_DIR);
+        Files.createDirectories(tmpDir);
+        Path tmp = Files.createTempFile(tmpDir, "upload", ".part");
+
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (ReadableByteChannel in = Channels.newChannel(file.getInputStream());
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        String hash = toHex(digest.digest());
+        String name = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension(file);
+        Path target = resolve(name);
+        synchronized (lockFor(name)) {
+            storedFileRepo.acquire(name, size);
+            if (Files.exists(target)) {
+                Files.delete(tmp);
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * public boolean release(String name)
+     * drops one reference to stored file and deletes the file when it was the last one, returns true if deleted.
+     * Files stored before content-addressing have no stored_file row and are left to orphan collection
+     */
+    public boolean release(String name) throws IOException {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        synchronized (lockFor(name)) {
+            if (storedFileRepo.release(name) > 0 && storedFileRepo.deleteUnreferenced(name) > 0) {
+                Files.deleteIfExists(resolve(name));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * public long deleteOrphan(String name, long olderThanMillis, Predicate<String> isReferenced)
+     * deletes stored file and its stored_file row when it was not modified since olderThanMillis and is not
+     * referenced, check and delete are made under the same lock as store. Returns deleted bytes or -1
+     */
+    public long deleteOrphan(String name, long olderThanMillis, Predicate<String> isReferenced) throws IOException {
+        Path path = resolve(name);
+        synchronized (lockFor(name)) {
+            if (!Files.isRegularFile(path) || Files.getLastModifiedTime(path).toMillis() >= olderThanMillis
+                    || isReferenced.test(name)) {
+                return -1;
+            }
+            long size = Files.size(path);
+            storedFileRepo.deleteByName(name);
+            Files.delete(path);
+            return size;
+        }
+    }
+
+    /**
+     * public Path resolve(String name)
+     * path of stored file, name must stay inside upload directory
+     */
+    public Path resolve(String name) {
+        Path root = Paths.get(uploadPath).toAbsolutePath().normalize();
+        Path path = root.resolve(name).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid file name: " + name);
+        }
+        return path;
+    }
+
+    private Object lockFor(String name) {
+        return locks[(name.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    private static String extension(MultipartFile file) {
+        String original = file.getOriginalFilename();
+        if (original != null && original.lastIndexOf('.') >= 0) {
+            String extension = original.substring(original.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (extension.matches("[a-z0-9]{1,10}")) {
+                return extension;
+            }
+        }
+        return "bin";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,72 @@
+package org.studyproject.metagram.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.studyproject.metagram.domain.UserCredentials;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of users loaded for form login and remember-me auto-login. Entries are immutable
+ * UserCredentials snapshots, never entities, so one entry can be shared by concurrent logins.
+ * Entries expire after user-cache.ttl-seconds and are invalidated by UserService on every change
+ * of username, password, roles or activation. Hit/miss statistics are logged every user-cache.stats-log-ms.
+ */
+@Slf4j
+@Component
+public class UserDetailsCache {
+    private final Cache<String, UserCredentials> users;
+
+    public UserDetailsCache(@Value("${user-cache.max-size:10000}") long maxSize,
+                            @Value("${user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * public UserCredentials get(String username, Function<String, UserCredentials> loader)
+     * cached user or user from loader, null results are not cached
+     */
+    public UserCredentials get(String username, Function<String, UserCredentials> loader) {
+        return users.get(username, loader);
+    }
+
+    /**
+     * public void invalidate(String... usernames)
+     * drops cached users
+     */
+    public void invalidate(String... usernames) {
+        for (String username : usernames) {
+            if (username != null) {
+                users.invalidate(username);
+            }
+        }
+    }
+
+    /**
+     * public CacheStats stats()
+     * hit, miss and eviction counters since start
+     */
+    public CacheStats stats() {
+        return users.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${user-cache.stats-log-ms:300000}")
+    public void logStats() {
+        CacheStats stats = users.stats();
+        if (stats.requestCount() > 0) {
+            log.info("User cache: size={}, hits={}, misses={}, hitRate={}, evictions={}",
+                    users.estimatedSize(), stats.hitCount(), stats.missCount(),
+                    String.format("%.3f", stats.hitRate()), stats.evictionCount());
+        }
+    }
+}
@@ -1,190 +1,294 @@
-package org.studyproject.metagram.service;
-
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import org.studyproject.metagram.domain.Role;
-import org.studyproject.metagram.domain.User;
-import org.studyproject.metagram.repos.MessageRepo;
-import org.studyproject.metagram.repos.UserRepo;
-
-import java.util.*;
-import java.util.stream.Collectors;
-
-import static org.studyproject.metagram.config.Literals.*;
-
-@Service
-public class UserService implements UserDetailsService {
-    PasswordEncoder passwordEncoder;
-    private UserRepo userRepo;
-    private SMTPMailSender smtpMailSender;
-    private MessageRepo messageRepo;
-    @Value("${hostname}")
-    private String hostname;
-
-    @Autowired
-    public UserService(PasswordEncoder passwordEncoder, UserRepo userRepo, SMTPMailSender smtpMailSender, MessageRepo messageRepo) {
-        this.passwordEncoder = passwordEncoder;
-        this.userRepo = userRepo;
-        this.smtpMailSender = smtpMailSender;
-        this.messageRepo = messageRepo;
-    }
-
-    /**
-     * public UserDetails loadUserByUsername(String username)
-     * get user from database
-     */
-    @Override
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepo.findByUsername(username);
-        if (user == null) {
-            throw new UsernameNotFoundException(USER_NOT_FOUND);
-        }
-        return user;
-    }
-
-    /**
-     * public boolean addUser(User user)
-     * saving user to database and send verify email
-     */
-    public boolean addUser(User user) {
-        User userFromDb = userRepo.findByUsername(user.getUsername());
-        user.setActive(false);
-        if (userFromDb != null) {
-
-            return false;
-        }
-        user.setRoles(Collections.singleton(Role.USER));
-        user.setActivationCode(UUID.randomUUID().toString());
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        userRepo.save(user);
-        sendVerifyEmail(user);
-        return true;
-    }
-
-    /**
-     * deleteUser(User user)
-     * delete user from database
-     */
-    public boolean deleteUser(User user) {
-        if (userRepo.findByUsername(user.getUsername()) != null) {
-            messageRepo.deleteAll(messageRepo.findAllByAuthor(user));
-            userRepo.delete(user);
-            return true;
-        }
-        return false;
-
-    }
-
-    /**
-     * sendVerifyEmail(User user)
-     * send email to verify account
-     */
-    public boolean sendVerifyEmail(User user) {
-        if (!StringUtils.isEmpty(user.getEmail())) {
-            String message = String.format(
-                    ACTIVATION_EMAIL,
-                    user.getUsername(),
-                    hostname,
-                    user.getActivationCode()
-            );
-
-            smtpMailSender.send(user.getEmail(), ACTIVATION_CODE, message);
-            return true;
-        }
-        return false;
-
-    }
-
-    /**
-     * public boolean activateUser(String code)
-     * user activation
-     */
-    public boolean activateUser(String code) {
-        User user = userRepo.findByActivationCode(code);
-        if (user == null) {
-            return false;
-        }
-        user.setActive(true);
-        user.setActivationCode(null);
-        userRepo.save(user);
-
-        return true;
-    }
-
-    /**
-     * public List<User> findAll()
-     * returns all users from database
-     */
-    public List<User> findAll() {
-        return userRepo.findAll();
-    }
-
-    /**
-     * public void save(User user, String username, Map<String, String> form)
-     * save user to database
-     */
-    public void save(User user, String username, Map<String, String> form) {
-        user.setUsername(username);
-
-        Set<String> roles = Arrays.stream(Role.values())
-                .map(Role::name)
-                .collect(Collectors.toSet());
-
-        user.getRoles().clear();
-
-        for (String key : form.keySet()) {
-            if (roles.contains(key)) {
-                user.getRoles().add(Role.valueOf(key));
-            }
-        }
-        userRepo.save(user);
-    }
-
-    /**
-     * public void updateProfile(User user, String password, String email)
-     * save edited user profile
-     */
-    public void updateProfile(User user, String password, String email) {
-        String userEmail = user.getEmail();
-        boolean isEmailChanged = (email != null && !email.equals(userEmail)) || (userEmail != null && userEmail.equals(email));
-        if (isEmailChanged) {
-            user.setEmail(email);
-
-            if (!StringUtils.isEmpty(email)) {
-                user.setActivationCode(UUID.randomUUID().toString());
-            }
-        }
-        if (!StringUtils.isEmpty(password)) {
-            user.setPassword(password);
-        }
-        userRepo.save(user);
-        if (isEmailChanged) {
-            sendVerifyEmail(user);
-        }
-
-    }
-
-    /**
-     * public void subscribe(User currentUser, User user)
-     * subscribe to another user
-     */
-    public void subscribe(User currentUser, User user) {
-        user.getSubscribers().add(currentUser);
-        userRepo.save(user);
-    }
-
-    /**
-     * public void unsubscribe(User currentUser, User user)
-     * unsubscribe to another user
-     */
-    public void unsubscribe(User currentUser, User user) {
-        user.getSubscribers().remove(currentUser);
-        userRepo.save(user);
-    }
-}
+package org.studyproject.metagram.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import org.studyproject.metagram.domain.Role;
+import org.studyproject.metagram.domain.User;
+import org.studyproject.metagram.domain.UserCredentials;
+import org.studyproject.metagram.domain.dto.UserDirectoryEntry;
+import org.studyproject.metagram.domain.dto.UserSummaryDto;
+import org.studyproject.metagram.exeption.ResourceNotFoundException;
+import org.studyproject.metagram.repos.UserRepo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.studyproject.metagram.config.Literals.*;
+
+@Service
+public class UserService implements UserDetailsService {
+    PasswordEncoder passwordEncoder;
+    private UserRepo userRepo;
+    private SMTPMailSender smtpMailSender;
+    private AccountDeletionService accountDeletionService;
+    private TimelineService timelineService;
+    private UserDetailsCache userDetailsCache;
+    private FeedVersion feedVersion;
+    private EntityCache entityCache;
+    @Value("${hostname}")
+    private String hostname;
+
+    @Autowired
+    public UserService(PasswordEncoder passwordEncoder, UserRepo userRepo, SMTPMailSender smtpMailSender,
+                       AccountDeletionService accountDeletionService, TimelineService timelineService,
+                       UserDetailsCache userDetailsCache, FeedVersion feedVersion,
+                       EntityCache entityCache) {
+        this.passwordEncoder = passwordEncoder;
+        this.userRepo = userRepo;
+        this.smtpMailSender = smtpMailSender;
+        this.accountDeletionService = accountDeletionService;
+        this.timelineService = timelineService;
+        this.userDetailsCache = userDetailsCache;
+        this.feedVersion = feedVersion;
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * public UserDetails loadUserByUsername(String username)
+     * get immutable snapshot of user from cache or database
+     */
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserCredentials credentials = userDetailsCache.get(username, name -> {
+            User user = userRepo.findByUsername(name);
+            return user == null ? null : new UserCredentials(user);
+        });
+        if (credentials == null) {
+            throw new UsernameNotFoundException(USER_NOT_FOUND);
+        }
+        return credentials;
+    }
+
+    /**
+     * public boolean addUser(User user)
+     * saving user to database and send verify email
+     */
+    public boolean addUser(User user) {
+        User userFromDb = userRepo.findByUsername(user.getUsername());
+        user.setActive(false);
+        if (userFromDb != null) {
+
+            return false;
+        }
+        user.setRoles(Collections.singleton(Role.USER));
+        user.setActivationCode(UUID.randomUUID().toString());
+        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        userRepo.save(user);
+        sendVerifyEmail(user);
+        return true;
+    }
+
+    /**
+     * deleteUser(User user)
+     * deactivate user and queue deletion of the account with all its messages and files
+     */
+    public boolean deleteUser(User user) {
+        if (!userRepo.existsById(user.getId())) {
+            return false;
+        }
+        accountDeletionService.enqueue(user);
+        userDetailsCache.invalidate(user.getUsername());
+        return true;
+    }
+
+    /**
+     * sendVerifyEmail(User user)
+     * send email to verify account
+     */
+    public boolean sendVerifyEmail(User user) {
+        if (!StringUtils.isEmpty(user.getEmail())) {
+            String message = String.format(
+                    ACTIVATION_EMAIL,
+                    user.getUsername(),
+                    hostname,
+                    user.getActivationCode()
+            );
+
+            smtpMailSender.send(user.getEmail(), ACTIVATION_CODE, message);
+            return true;
+        }
+        return false;
+
+    }
+
+    /**
+     * public boolean activateUser(String code)
+     * user activation
+     */
+    public boolean activateUser(String code) {
+        User user = userRepo.findByActivationCode(code);
+        if (user == null) {
+            return false;
+        }
+        user.setActive(true);
+        user.setActivationCode(null);
+        userRepo.save(user);
+        userDetailsCache.invalidate(user.getUsername());
+
+        return true;
+    }
+
+    /**
+     * public User findById(Long id)
+     * returns user from database, session principal has only id, username and roles
+     */
+    public User findById(Long id) {
+        return userRepo.findById(id).orElseThrow(() -> new ResourceNotFoundException(USER_NOT_FOUND));
+    }
+
+    /**
+     * public List<UserDirectoryEntry> directory(String prefix, String afterName, Long afterId, int size)
+     * page of users with username starting with prefix after (afterName, afterId) cursor,
+     * size + 1 rows are loaded to detect next page
+     */
+    public List<UserDirectoryEntry> directory(String prefix, String afterName, Long afterId, int size) {
+        String pattern = (prefix == null ? "" : prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")) + "%";
+        return userRepo.findDirectoryPage(pattern,
+                afterName == null ? "" : afterName,
+                afterId == null ? 0 : afterId,
+                size + 1);
+    }
+
+    /**
+     * public void exportDirectory(Writer writer)
+     * writes all users as CSV row by row from database cursor, the list is never held in memory
+     */
+    @Transactional(readOnly = true)
+    public void exportDirectory(Writer writer) throws IOException {
+        writer.write("id,username,roles,active\n");
+        try (Stream<UserDirectoryEntry> entries = userRepo.streamDirectory()) {
+            Iterator<UserDirectoryEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                UserDirectoryEntry entry = iterator.next();
+                writer.write(entry.getId() + "," + csv(entry.getUsername()) + "," + csv(entry.getRoles()) + ","
+                        + entry.isActive() + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * public void save(User user, String username, Map<String, String> form)
+     * save user to database, renaming changes author name in rendered feeds
+     */
+    public void save(User user, String username, Map<String, String> form) {
+        userDetailsCache.invalidate(user.getUsername(), username);
+        boolean renamed = !user.getUsername().equals(username);
+        user.setUsername(username);
+
+        Set<String> roles = Arrays.stream(Role.values())
+                .map(Role::name)
+                .collect(Collectors.toSet());
+
+        user.getRoles().clear();
+
+        for (String key : form.keySet()) {
+            if (roles.contains(key)) {
+                user.getRoles().add(Role.valueOf(key));
+            }
+        }
+        userRepo.save(user);
+        if (renamed) {
+            feedVersion.allChanged();
+        }
+    }
+
+    /**
+     * public void updateProfile(User user, String password, String email)
+     * save edited user profile
+     */
+    public void updateProfile(User user, String password, String email) {
+        String userEmail = user.getEmail();
+        boolean isEmailChanged = (email != null && !email.equals(userEmail)) || (userEmail != null && userEmail.equals(email));
+        if (isEmailChanged) {
+            user.setEmail(email);
+
+            if (!StringUtils.isEmpty(email)) {
+                user.setActivationCode(UUID.randomUUID().toString());
+            }
+        }
+        if (!StringUtils.isEmpty(password)) {
+            user.setPassword(password);
+        }
+        userRepo.save(user);
+        userDetailsCache.invalidate(user.getUsername());
+        if (isEmailChanged) {
+            sendVerifyEmail(user);
+        }
+
+    }
+
+    /**
+     * public void subscribe(User currentUser, User user)
+     * subscribe to another user, subscribers collection is not loaded
+     */
+    @Transactional
+    public void subscribe(User currentUser, User user) {
+        if (userRepo.addSubscription(user.getId(), currentUser.getId()) > 0) {
+            userRepo.updateSubscriptionCounts(user.getId(), currentUser.getId(), 1);
+            entityCache.evictUser(user.getId(), currentUser.getId());
+        }
+        timelineService.invalidate(currentUser.getId());
+    }
+
+    /**
+     * public void unsubscribe(User currentUser, User user)
+     * unsubscribe to another user
+     */
+    @Transactional
+    public void unsubscribe(User currentUser, User user) {
+        if (userRepo.removeSubscription(user.getId(), currentUser.getId()) > 0) {
+            userRepo.updateSubscriptionCounts(user.getId(), currentUser.getId(), -1);
+            entityCache.evictUser(user.getId(), currentUser.getId());
+        }
+        timelineService.invalidate(currentUser.getId());
+    }
+
+    /**
+     * public boolean isSubscribed(User channel, User subscriber)
+     * single row lookup in user_subscriptions
+     */
+    public boolean isSubscribed(User channel, User subscriber) {
+        return userRepo.isSubscribed(channel.getId(), subscriber.getId());
+    }
+
+    /**
+     * public List<UserSummaryDto> relationships(User user, String type, Long after, int size)
+     * page of subscriptions or subscribers with id greater than after, size + 1 rows are loaded to detect next page
+     */
+    public List<UserSummaryDto> relationships(User user, String type, Long after, int size) {
+        PageRequest limit = PageRequest.of(0, size + 1);
+        long from = after == null ? 0 : after;
+        return "subscriptions".equals(type)
+                ? userRepo.findSubscriptions(user.getId(), from, limit)
+                : userRepo.findSubscribers(user.getId(), from, limit);
+    }
+
+    /**
+     * quotes CSV cell, cell which starts with formula character is prefixed with ' so spreadsheet
+     * applications show it as text instead of evaluating it
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
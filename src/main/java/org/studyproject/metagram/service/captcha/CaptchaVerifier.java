@@ -0,0 +1,15 @@
+package org.studyproject.metagram.service.captcha;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Verifies captcha response from registration form.
+ * Implementation is selected by captcha.verifier property: recaptcha (default) or stub.
+ */
+public interface CaptchaVerifier {
+    /**
+     * CompletableFuture<Boolean> verify(String captchaResponse)
+     * completes with true when captcha is solved, never completes exceptionally
+     */
+    CompletableFuture<Boolean> verify(String captchaResponse);
+}
@@ -0,0 +1,48 @@
+package org.studyproject.metagram.service.captcha;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simple circuit breaker: after failureThreshold consecutive failures calls are rejected for openMillis,
+ * then one trial call is allowed, its success closes the circuit.
+ */
+public class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong(-1);
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * public boolean allowRequest()
+     * false while circuit is open. When open period is over only the caller which wins the trial is allowed
+     */
+    public boolean allowRequest() {
+        long opened = openedAt.get();
+        if (opened < 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        return now - opened >= openMillis && openedAt.compareAndSet(opened, now);
+    }
+
+    public void onSuccess() {
+        failures.set(0);
+        openedAt.set(-1);
+    }
+
+    public void onFailure() {
+        if (failures.incrementAndGet() >= failureThreshold) {
+            openedAt.set(System.currentTimeMillis());
+        }
+    }
+
+    public boolean isOpen() {
+        return openedAt.get() >= 0;
+    }
+}
@@ -0,0 +1,75 @@
+package org.studyproject.metagram.service.captcha;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.studyproject.metagram.domain.dto.CaptchaResponceDto;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Google reCAPTCHA verifier. Calls are made on bounded captcha executor with pooled, time-bounded client
+ * and guarded by circuit breaker. Tokens are single-use, so every token is sent to siteverify and none is cached.
+ * When Google is unavailable result is defined by captcha.fail-open: true lets registration pass, false rejects it.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "captcha.verifier", havingValue = "recaptcha", matchIfMissing = true)
+public class RecaptchaVerifier implements CaptchaVerifier {
+    private static final String CAPTCHA_URL = "https://www.google.com/recaptcha/api/siteverify?secret=%s&response=%s";
+    private final RestTemplate restTemplate;
+    private final TaskExecutor executor;
+    private final CircuitBreaker circuitBreaker;
+    @Value("${recaptcha.secret}")
+    private String secret;
+    @Value("${captcha.fail-open:false}")
+    private boolean failOpen;
+
+    @Autowired
+    public RecaptchaVerifier(@Qualifier("captchaRestTemplate") RestTemplate restTemplate,
+                             @Qualifier("captchaExecutor") TaskExecutor executor,
+                             @Value("${captcha.breaker.failure-threshold:5}") int failureThreshold,
+                             @Value("${captcha.breaker.open-ms:30000}") long openMillis) {
+        this.restTemplate = restTemplate;
+        this.executor = executor;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> verify(String captchaResponse) {
+        if (captchaResponse == null || captchaResponse.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(failOpen);
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> call(captchaResponse), executor)
+                    .handle((success, error) -> {
+                        if (error != null) {
+                            circuitBreaker.onFailure();
+                            log.warn("reCAPTCHA verification failed, fail-open={}", failOpen, error);
+                            return failOpen;
+                        }
+                        circuitBreaker.onSuccess();
+                        return success;
+                    });
+        } catch (RejectedExecutionException e) {
+            log.warn("reCAPTCHA executor is saturated, fail-open={}", failOpen);
+            return CompletableFuture.completedFuture(failOpen);
+        }
+    }
+
+    private boolean call(String captchaResponse) {
+        String url = String.format(CAPTCHA_URL, secret, captchaResponse);
+        CaptchaResponceDto responce = restTemplate.postForObject(url, Collections.emptyList(), CaptchaResponceDto.class);
+        return responce != null && responce.isSuccess();
+    }
+}
@@ -0,0 +1,20 @@
+package org.studyproject.metagram.service.captcha;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Local verifier which accepts any non-empty captcha response, uses for offline load tests of registration
+ */
+@Service
+@ConditionalOnProperty(name = "captcha.verifier", havingValue = "stub")
+public class StubCaptchaVerifier implements CaptchaVerifier {
+
+    @Override
+    public CompletableFuture<Boolean> verify(String captchaResponse) {
+        return CompletableFuture.completedFuture(!StringUtils.isEmpty(captchaResponse));
+    }
+}
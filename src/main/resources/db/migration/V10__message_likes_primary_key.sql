@@ -0,0 +1,11 @@
+-- like toggle relies on unique (message_id, user_id): insert ... on conflict do nothing
+do $$
+begin
+    if not exists (select 1 from pg_constraint where conrelid = 'message_likes'::regclass and contype in ('p', 'u')) then
+        delete from message_likes a
+            using message_likes b
+            where a.ctid > b.ctid and a.message_id = b.message_id and a.user_id = b.user_id;
+        alter table message_likes add primary key (message_id, user_id);
+    end if;
+end
+$$;
@@ -0,0 +1,24 @@
+-- denormalized subscribers.size() and subscriptions.size(), maintained by UserService
+alter table usr add column if not exists subscriber_count bigint not null default 0;
+alter table usr add column if not exists subscription_count bigint not null default 0;
+
+do $$
+begin
+    if not exists (select 1 from pg_constraint where conrelid = 'user_subscriptions'::regclass and contype in ('p', 'u')) then
+        delete from user_subscriptions a
+            using user_subscriptions b
+            where a.ctid > b.ctid and a.channel_id = b.channel_id and a.subscriber_id = b.subscriber_id;
+        alter table user_subscriptions add primary key (channel_id, subscriber_id);
+    end if;
+end
+$$;
+
+update usr u
+set subscriber_count = c.cnt
+from (select channel_id, count(*) cnt from user_subscriptions group by channel_id) c
+where u.id = c.channel_id;
+
+update usr u
+set subscription_count = c.cnt
+from (select subscriber_id, count(*) cnt from user_subscriptions group by subscriber_id) c
+where u.id = c.subscriber_id;
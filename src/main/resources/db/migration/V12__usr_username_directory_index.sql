@@ -0,0 +1,2 @@
+-- admin user directory: prefix search and keyset order by (username, id) in "C" collation
+create index if not exists usr_username_c_id_idx on usr (username collate "C", id);
@@ -0,0 +1,15 @@
+-- background account deletion jobs, processed by AccountDeletionService
+create table if not exists account_deletion (
+    id               bigint      not null primary key,
+    user_id          bigint      not null,
+    username         varchar(255),
+    status           varchar(16) not null,
+    messages_deleted bigint      not null default 0,
+    files_released   bigint      not null default 0,
+    created_at       timestamp   not null,
+    updated_at       timestamp   not null,
+    last_error       varchar(1024)
+);
+
+create index if not exists account_deletion_status_idx on account_deletion (status, id);
+create index if not exists message_likes_user_id_idx on message_likes (user_id);
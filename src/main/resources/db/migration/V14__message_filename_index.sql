@@ -0,0 +1,2 @@
+-- orphaned upload collection checks batches of stored names against message.filename
+create index if not exists message_filename_idx on message (filename);
@@ -0,0 +1,3 @@
+-- failed account deletion jobs are retried with backoff, see AccountDeletionService
+alter table account_deletion add column if not exists attempts integer not null default 0;
+alter table account_deletion add column if not exists next_attempt_at timestamp;
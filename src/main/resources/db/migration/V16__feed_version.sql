@@ -0,0 +1,9 @@
+-- feed versions shared by all nodes, moved in the transaction of the change, see FeedVersion
+create sequence if not exists feed_version_seq;
+
+create table if not exists feed_version (
+    feed            varchar(300) not null primary key,
+    content_version bigint       not null default 0,
+    likes_version   bigint       not null default 0,
+    updated_at      timestamp    not null
+);
@@ -0,0 +1,35 @@
+-- schema created by Hibernate before Flyway, existing databases are baselined at version 1 and skip it,
+-- empty databases (benchmarks, load tests, new installations) get it from here
+create sequence if not exists hibernate_sequence start 1 increment 1;
+
+create table if not exists usr (
+    id              bigint  not null primary key,
+    activation_code varchar(255),
+    active          boolean not null,
+    email           varchar(255),
+    password        varchar(255),
+    username        varchar(255)
+);
+
+create table if not exists user_role (
+    user_id bigint not null references usr (id),
+    roles   varchar(255)
+);
+
+create table if not exists message (
+    id       bigint not null primary key,
+    filename varchar(255),
+    tag      varchar(255),
+    text     varchar(2048),
+    user_id  bigint references usr (id)
+);
+
+create table if not exists message_likes (
+    message_id bigint not null references message (id),
+    user_id    bigint not null references usr (id)
+);
+
+create table if not exists user_subscriptions (
+    channel_id    bigint not null references usr (id),
+    subscriber_id bigint not null references usr (id)
+);
@@ -0,0 +1,3 @@
+-- keyset pagination of feeds: where ... and id < :before order by id desc
+create index if not exists message_user_id_id_idx on message (user_id, id);
+create index if not exists message_tag_id_idx on message (tag, id);
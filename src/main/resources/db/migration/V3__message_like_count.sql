@@ -0,0 +1,7 @@
+-- denormalized likes counter, maintained by MessageService.like and LikeCountReconciler
+alter table message add column if not exists like_count bigint not null default 0;
+
+update message m
+set like_count = c.cnt
+from (select message_id, count(*) cnt from message_likes group by message_id) c
+where m.id = c.message_id;
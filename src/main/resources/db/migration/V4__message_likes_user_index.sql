@@ -0,0 +1,2 @@
+-- meLiked is resolved per page: where user_id = :user and message_id in (:ids)
+create index if not exists message_likes_user_id_message_id_idx on message_likes (user_id, message_id);
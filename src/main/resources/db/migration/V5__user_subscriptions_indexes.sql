@@ -0,0 +1,3 @@
+-- timeline fan-out: subscribers of channel on write, subscriptions of user on read
+create index if not exists user_subscriptions_channel_id_idx on user_subscriptions (channel_id, subscriber_id);
+create index if not exists user_subscriptions_subscriber_id_idx on user_subscriptions (subscriber_id, channel_id);
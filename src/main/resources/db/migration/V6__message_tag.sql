@@ -0,0 +1,17 @@
+-- normalized message tags: tag field split by spaces, commas or #, plus #hashtags from text
+create table if not exists message_tag (
+    message_id bigint       not null references message (id) on delete cascade,
+    tag        varchar(255) not null,
+    primary key (tag, message_id)
+);
+
+insert into message_tag (message_id, tag)
+select id, left(t, 255)
+from (select id, regexp_split_to_table(lower(tag), '[\s,#]+') t from message
+      union
+      select id, lower((regexp_matches(text, '#(\w+)', 'g'))[1]) from message) parsed
+where t <> ''
+on conflict do nothing;
+
+-- feeds by tag now use message_tag primary key (tag, message_id)
+drop index if exists message_tag_id_idx;
@@ -0,0 +1,2 @@
+-- full-text search over message text, see MessageRepo.search
+create index if not exists message_text_fts_idx on message using gin (to_tsvector('simple', text));
@@ -0,0 +1,6 @@
+-- content-addressed uploads with reference counting, see UploadStorage
+create table if not exists stored_file (
+    name      varchar(255) not null primary key,
+    size      bigint       not null,
+    ref_count integer      not null
+);
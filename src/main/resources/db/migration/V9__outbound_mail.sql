@@ -0,0 +1,13 @@
+-- durable outbound mail queue, drained by MailQueueWorker
+create table if not exists outbound_mail (
+    id              bigint    not null primary key,
+    recipient       varchar(255),
+    subject         varchar(255),
+    body            text,
+    attempts        integer   not null default 0,
+    next_attempt_at timestamp not null,
+    last_error      varchar(1024),
+    failed          boolean   not null default false
+);
+
+create index if not exists outbound_mail_due_idx on outbound_mail (next_attempt_at) where failed = false;
@@ -0,0 +1,34 @@
+// live feed: counts new posts of the current topic and refreshes like counters, see FeedPublisher
+(function () {
+    var topic = document.getElementById('live-feed-script').getAttribute('data-topic');
+    var banner = document.getElementById('live-feed-banner');
+    var counter = document.getElementById('live-feed-count');
+    var newPosts = 0;
+
+    function onUpdate(frame) {
+        var update = JSON.parse(frame.body);
+        if (update.messages.length > 0) {
+            newPosts += update.messages.length;
+            counter.textContent = newPosts;
+            banner.classList.remove('d-none');
+        }
+        Object.keys(update.likes).forEach(function (id) {
+            var likes = document.querySelectorAll('[data-likes-id="' + id + '"]');
+            for (var i = 0; i < likes.length; i++) {
+                likes[i].textContent = update.likes[id];
+            }
+        });
+    }
+
+    function connect() {
+        var client = Stomp.over(new SockJS('/ws'));
+        client.debug = null;
+        client.connect({}, function () {
+            client.subscribe(topic, onUpdate);
+        }, function () {
+            setTimeout(connect, 5000);
+        });
+    }
+
+    connect();
+})();